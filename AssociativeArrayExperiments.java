@@ -1,5 +1,8 @@
 import java.io.PrintWriter;
 import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 import structures.*;
 
@@ -18,7 +21,7 @@ public class AssociativeArrayExperiments {
   /**
    * Run the experiments.
    */
-  public static void main(String[] args) {
+  public static void main(String[] args) throws Exception {
     PrintWriter pen = new PrintWriter(System.out, true);
 
     divider(pen);
@@ -26,6 +29,18 @@ public class AssociativeArrayExperiments {
     divider(pen);
     experimentBigIntToBigInt(pen);
     divider(pen);
+    experimentGetCost(pen);
+    divider(pen);
+    experimentPrimitiveArrays(pen);
+    divider(pen);
+    experimentConcurrentThroughput(pen);
+    divider(pen);
+    experimentProbeLengths(pen);
+    divider(pen);
+    experimentGroupProbing(pen);
+    divider(pen);
+    experimentCachePolicies(pen);
+    divider(pen);
   } // main(String[])
 
   // +-------------+-------------------------------------------------
@@ -96,10 +111,426 @@ public class AssociativeArrayExperiments {
     } // for
   } // experimentBigIntToBigInt
 
+  /**
+   * Our third experiment: How much does a call to get cost on a hit
+   * and on a miss? We compare the single-probe get with the old
+   * hasKey-then-get pattern, which probes twice on every hit.
+   */
+  public static void experimentGetCost(PrintWriter pen) {
+    final int SIZE = 100000;
+    final int ROUNDS = 20;
+    AssociativeArray<Integer,Integer> i2i = 
+      new AssociativeArray<Integer,Integer>(SIZE);
+    Integer[] hits = new Integer[SIZE];
+    Integer[] misses = new Integer[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      i2i.set(i, i);
+      hits[i] = i;
+      misses[i] = SIZE + i;
+    } // for
+
+    // Warm up, so that we time compiled code
+    for (int round = 0; round < ROUNDS; round++) {
+      timeGet(i2i, hits);
+      timeHasKeyThenGet(i2i, hits);
+      timeGet(i2i, misses);
+      timeHasKey(i2i, misses);
+    } // for
+
+    pen.println("ns per lookup over " + SIZE + " keys");
+    pen.println("  hit,  get:              " + timeGet(i2i, hits) / SIZE);
+    pen.println("  hit,  hasKey then get:  "
+      + timeHasKeyThenGet(i2i, hits) / SIZE);
+    pen.println("  miss, get:              " + timeGet(i2i, misses) / SIZE);
+    pen.println("  miss, hasKey:           " + timeHasKey(i2i, misses) / SIZE);
+
+    // Misses with the shared, stackless exception
+    i2i.setLightweightExceptions(true);
+    for (int round = 0; round < ROUNDS; round++) {
+      timeGet(i2i, misses);
+    } // for
+    pen.println("  miss, lightweight get:  " + timeGet(i2i, misses) / SIZE);
+  } // experimentGetCost
+
+  /**
+   * Our fourth experiment: How do the primitive-specialized arrays
+   * compare with the generic one? We time filling each with SIZE
+   * pairs and then looking every key up again.
+   */
+  public static void experimentPrimitiveArrays(PrintWriter pen) {
+    final int SIZE = 1000000;
+    final int ROUNDS = 5;
+    long generic = 0;
+    long intInt = 0;
+    long longObject = 0;
+    long objectInt = 0;
+    String[] names = new String[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      names[i] = "k" + i;
+    } // for
+
+    // The first rounds warm up, so we only keep the last one
+    for (int round = 0; round < ROUNDS; round++) {
+      long sum = 0;
+
+      long start = System.nanoTime();
+      AssociativeArray<Integer,Integer> i2i =
+        new AssociativeArray<Integer,Integer>();
+      for (int i = 0; i < SIZE; i++) {
+        i2i.set(i, i);
+      } // for
+      for (int i = 0; i < SIZE; i++) {
+        sum += i2i.getOrDefault(i, 0);
+      } // for
+      generic = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      IntIntAssociativeArray ii = new IntIntAssociativeArray();
+      for (int i = 0; i < SIZE; i++) {
+        ii.set(i, i);
+      } // for
+      for (int i = 0; i < SIZE; i++) {
+        sum += ii.getOrDefault(i, 0);
+      } // for
+      intInt = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      LongObjectAssociativeArray<String> lo =
+        new LongObjectAssociativeArray<String>();
+      for (int i = 0; i < SIZE; i++) {
+        lo.set(i, names[i]);
+      } // for
+      for (int i = 0; i < SIZE; i++) {
+        sum += lo.getOrDefault(i, "").length();
+      } // for
+      longObject = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      ObjectIntAssociativeArray<String> oi =
+        new ObjectIntAssociativeArray<String>();
+      for (int i = 0; i < SIZE; i++) {
+        oi.set(names[i], i);
+      } // for
+      for (int i = 0; i < SIZE; i++) {
+        sum += oi.getOrDefault(names[i], 0);
+      } // for
+      objectInt = System.nanoTime() - start;
+
+      if (sum == 42) {
+        System.err.print("");
+      } // if
+    } // for
+
+    pen.println("ms to set and then get " + SIZE + " pairs");
+    pen.println("  AssociativeArray<Integer,Integer>:   " + generic / 1000000);
+    pen.println("  IntIntAssociativeArray:              " + intInt / 1000000);
+    pen.println("  LongObjectAssociativeArray<String>:  " + longObject / 1000000);
+    pen.println("  ObjectIntAssociativeArray<String>:   " + objectInt / 1000000);
+  } // experimentPrimitiveArrays
+
+  /**
+   * Our fifth experiment: How does throughput grow with the number of
+   * threads? Each thread does 90% gets and 10% sets on random keys,
+   * either on a ConcurrentAssociativeArray or on an AssociativeArray
+   * behind a single lock.
+   */
+  public static void experimentConcurrentThroughput(PrintWriter pen) 
+      throws InterruptedException {
+    final int KEYS = 100000;
+    final int OPS = 2000000;
+    ConcurrentAssociativeArray<Integer,Integer> concurrent =
+      new ConcurrentAssociativeArray<Integer,Integer>();
+    AssociativeArray<Integer,Integer> locked =
+      new AssociativeArray<Integer,Integer>(KEYS);
+    for (int i = 0; i < KEYS; i++) {
+      concurrent.set(i, i);
+      locked.set(i, i);
+    } // for
+
+    pen.println("operations per microsecond (90% get, 10% set)");
+    pen.println("  threads  striped  single lock");
+    int processors = Runtime.getRuntime().availableProcessors();
+    for (int threads = 1; threads <= processors; threads *= 2) {
+      Runnable striped = () -> {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < OPS; i++) {
+          int key = random.nextInt(KEYS);
+          if (random.nextInt(10) == 0) {
+            concurrent.set(key, i);
+          } else {
+            concurrent.getOrDefault(key, 0);
+          } // if/else
+        } // for
+      };
+      Runnable single = () -> {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < OPS; i++) {
+          int key = random.nextInt(KEYS);
+          synchronized (locked) {
+            if (random.nextInt(10) == 0) {
+              locked.set(key, i);
+            } else {
+              locked.getOrDefault(key, 0);
+            } // if/else
+          } // synchronized
+        } // for
+      };
+      // The first run of each warms up
+      runThreads(threads, striped);
+      runThreads(threads, single);
+      long stripedTime = runThreads(threads, striped);
+      long singleTime = runThreads(threads, single);
+      long ops = (long) threads * OPS * 1000;
+      pen.printf("  %7d  %7d  %11d%n", threads, ops / stripedTime,
+        ops / singleTime);
+    } // for
+  } // experimentConcurrentThroughput
+
+  /**
+   * Our sixth experiment: How long do probes get as a table grows at a
+   * load factor of 0.9, with linear probing and with Robin Hood
+   * hashing? We fill each index to 90% of its slots. (For group
+   * probing, we count groups of eight slots rather than slots.)
+   */
+  public static void experimentProbeLengths(PrintWriter pen) {
+    pen.println("probe lengths at load factor 0.9 (max / average)");
+    pen.println("     pairs        linear   robin hood          group");
+    for (int slots = 1 << 10; slots <= (1 << 22); slots <<= 4) {
+      int size = (int) (0.9 * slots);
+      StringBuilder line = new StringBuilder();
+      line.append(String.format("  %8d", size));
+      for (AssociativeArray.Probing probing : AssociativeArray.Probing.values()) {
+        AssociativeArray<String,Integer> s2i = 
+          new AssociativeArray<String,Integer>(size, 0.9f, 2.0f, probing);
+        for (int i = 0; i < size; i++) {
+          s2i.set("key" + i, i);
+        } // for
+        line.append(String.format("  %5d / %4.2f", s2i.maxProbeLength(),
+          s2i.averageProbeLength()));
+      } // for
+      pen.println(line);
+    } // for
+  } // experimentProbeLengths
+
+  /**
+   * Our seventh experiment: How much do hits and misses cost with each
+   * kind of probing, in a table whose index is 7/8 full? Group probing
+   * compares a key against eight slots at once, which should help most
+   * on misses.
+   */
+  public static void experimentGroupProbing(PrintWriter pen) {
+    final int SIZE = 1 << 18;
+    final int ROUNDS = 20;
+    Integer[] hits = new Integer[SIZE];
+    Integer[] misses = new Integer[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      hits[i] = i * 31;
+      misses[i] = i * 31 + 1;
+    } // for
+    pen.println("ns per lookup over " + SIZE + " keys, load factor 0.875");
+    pen.println("                  hit    miss");
+    for (AssociativeArray.Probing probing : AssociativeArray.Probing.values()) {
+      AssociativeArray<Integer,Integer> i2i = 
+        new AssociativeArray<Integer,Integer>(SIZE, 0.875f, 2.0f, probing);
+      for (Integer key : hits) {
+        i2i.set(key, key);
+      } // for
+      // Warm up, so that we time compiled code
+      for (int round = 0; round < ROUNDS; round++) {
+        timeGet(i2i, hits);
+        timeHasKey(i2i, misses);
+      } // for
+      pen.println(String.format("  %-12s  %5d   %5d", probing,
+        timeGet(i2i, hits) / SIZE, timeHasKey(i2i, misses) / SIZE));
+    } // for
+  } // experimentGroupProbing
+
+  /**
+   * Our eighth experiment: What fraction of lookups hit in a cache that
+   * evicts by LRU, and in one that evicts by TinyLFU? We replay traces
+   * of keys through each cache, setting a key whenever it misses. The
+   * traces are skewed (Zipf), loop over a few more keys than fit, or
+   * mix a skewed trace with long scans of keys used only once.
+   */
+  public static void experimentCachePolicies(PrintWriter pen) {
+    final int LENGTH = 1000000;
+    final int KEYS = 100000;
+    pen.println("hit rates over " + LENGTH + " lookups");
+    pen.println("  trace              capacity      lru   tinylfu");
+    for (int capacity : new int[] { 1000, 10000 }) {
+      int[][] traces = {
+        zipfTrace(LENGTH, KEYS, 0.8, 1),
+        zipfTrace(LENGTH, KEYS, 1.0, 2),
+        loopTrace(LENGTH, capacity + capacity / 2),
+        scanTrace(LENGTH, KEYS, capacity, 3)
+      };
+      String[] names = { "zipf 0.8", "zipf 1.0", "loop 1.5x", "zipf + scans" };
+      for (int t = 0; t < traces.length; t++) {
+        pen.println(String.format("  %-16s  %8d   %5.1f%%    %5.1f%%", names[t],
+          capacity, 
+          100 * hitRate(new LruAssociativeArray<Integer,Integer>(capacity),
+            traces[t]),
+          100 * hitRate(new TinyLfuAssociativeArray<Integer,Integer>(capacity),
+            traces[t])));
+      } // for
+    } // for
+  } // experimentCachePolicies
+
   // +---------+-----------------------------------------------------
   // | Helpers |
   // +---------+
 
+  /**
+   * Run body in each of count threads, and return how long (in
+   * nanoseconds) it took for all of them to finish.
+   */
+  static long runThreads(int count, Runnable body) 
+      throws InterruptedException {
+    Thread[] threads = new Thread[count];
+    for (int i = 0; i < count; i++) {
+      threads[i] = new Thread(body);
+    } // for
+    long start = System.nanoTime();
+    for (Thread thread : threads) {
+      thread.start();
+    } // for
+    for (Thread thread : threads) {
+      thread.join();
+    } // for
+    return System.nanoTime() - start;
+  } // runThreads(int, Runnable)
+
+  /**
+   * Time (in nanoseconds) calling get on each of keys.
+   */
+  static long timeGet(AssociativeArray<Integer,Integer> arr, Integer[] keys) {
+    long sum = 0;
+    long start = System.nanoTime();
+    for (Integer key : keys) {
+      try { 
+        sum += arr.get(key); 
+      } catch (KeyNotFoundException e) { 
+        sum--;
+      } // try/catch
+    } // for
+    long time = System.nanoTime() - start;
+    // Use the sum, so that the loop cannot be optimized away
+    if (sum == 42) {
+      System.err.print("");
+    } // if
+    return time;
+  } // timeGet(AssociativeArray, Integer[])
+
+  /**
+   * Time (in nanoseconds) calling hasKey and then get on each of keys.
+   */
+  static long timeHasKeyThenGet(AssociativeArray<Integer,Integer> arr,
+      Integer[] keys) {
+    long sum = 0;
+    long start = System.nanoTime();
+    for (Integer key : keys) {
+      try { 
+        if (arr.hasKey(key)) {
+          sum += arr.get(key); 
+        } // if
+      } catch (KeyNotFoundException e) { 
+        sum--;
+      } // try/catch
+    } // for
+    long time = System.nanoTime() - start;
+    if (sum == 42) {
+      System.err.print("");
+    } // if
+    return time;
+  } // timeHasKeyThenGet(AssociativeArray, Integer[])
+
+  /**
+   * Time (in nanoseconds) calling hasKey on each of keys.
+   */
+  static long timeHasKey(AssociativeArray<Integer,Integer> arr, Integer[] keys) {
+    long count = 0;
+    long start = System.nanoTime();
+    for (Integer key : keys) {
+      if (arr.hasKey(key)) {
+        count++;
+      } // if
+    } // for
+    long time = System.nanoTime() - start;
+    if (count == 42) {
+      System.err.print("");
+    } // if
+    return time;
+  } // timeHasKey(AssociativeArray, Integer[])
+
+  /**
+   * Replay trace through cache, setting each key that misses, and
+   * return the fraction of lookups that hit.
+   */
+  static double hitRate(LruAssociativeArray<Integer,Integer> cache,
+      int[] trace) {
+    for (int key : trace) {
+      if (cache.getOrDefault(key, null) == null) {
+        cache.set(key, key);
+      } // if
+    } // for
+    return (double) cache.hits() / (cache.hits() + cache.misses());
+  } // hitRate(LruAssociativeArray, int[])
+
+  /**
+   * Make a trace of length lookups of keys from 0 to keys-1, where key
+   * k is used in proportion to 1/(k+1)^skew. The keys are shuffled, so
+   * that popularity does not follow their order.
+   */
+  static int[] zipfTrace(int length, int keys, double skew, long seed) {
+    Random random = new Random(seed);
+    double[] cumulative = new double[keys];
+    double sum = 0;
+    for (int k = 0; k < keys; k++) {
+      sum += 1 / Math.pow(k + 1, skew);
+      cumulative[k] = sum;
+    } // for
+    int[] names = new int[keys];
+    for (int k = 0; k < keys; k++) {
+      int j = random.nextInt(k + 1);
+      names[k] = names[j];
+      names[j] = k;
+    } // for
+    int[] trace = new int[length];
+    for (int i = 0; i < length; i++) {
+      int k = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+      trace[i] = names[Math.min((k < 0) ? -k - 1 : k, keys - 1)];
+    } // for
+    return trace;
+  } // zipfTrace(int, int, double, long)
+
+  /**
+   * Make a trace of length lookups that cycles through keys keys.
+   */
+  static int[] loopTrace(int length, int keys) {
+    int[] trace = new int[length];
+    for (int i = 0; i < length; i++) {
+      trace[i] = i % keys;
+    } // for
+    return trace;
+  } // loopTrace(int, int)
+
+  /**
+   * Make a trace of length lookups that follows a Zipf distribution
+   * over keys keys, except that every so often it scans through twice
+   * capacity keys that it never uses again.
+   */
+  static int[] scanTrace(int length, int keys, int capacity, long seed) {
+    int[] trace = zipfTrace(length, keys, 0.9, seed);
+    int scan = 2 * capacity;
+    int fresh = keys;
+    for (int start = 5 * scan; start + scan <= length; start += 10 * scan) {
+      for (int i = start; i < start + scan; i++) {
+        trace[i] = fresh++;
+      } // for
+    } // for
+    return trace;
+  } // scanTrace(int, int, int, long)
+
   /**
    * Print a divider.
    */
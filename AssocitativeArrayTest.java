@@ -1,6 +1,19 @@
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 import org.junit.jupiter.api.Test;
 
 import structures.*;
@@ -92,4 +105,957 @@ public class AssocitativeArrayTest {
      */
     assertTrue(testArray.hasKey(null), "null hasKey");
   }
+  /**
+   * Tests on keys whose hash codes collide
+   */
+  @Test
+  public void hyeonKimCollisions(){
+    AssociativeArray<String, Integer> testArray = new AssociativeArray<String, Integer>();
+    /**
+     * "Aa" and "BB" have the same hashCode()
+     */
+    testArray.set("Aa", 1);
+    testArray.set("BB", 2);
+    testArray.set(null, 3);
+    try {
+      assertEquals(1, testArray.get("Aa"), "collision example 1");
+      assertEquals(2, testArray.get("BB"), "collision example 2");
+      assertEquals(3, testArray.get(null), "collision with null");
+    } catch (Exception e) {
+      fail("collision example");
+    }
+    /**
+     * removing one colliding key should keep the other reachable
+     */
+    testArray.remove("Aa");
+    assertTrue(testArray.hasKey("BB"), "collision after remove");
+    assertEquals("{ BB: 2, null: 3 }", testArray.toString(), "collision order");
+  }
+  /**
+   * Tests on growing well past the default capacity
+   */
+  @Test
+  public void hyeonKimGrowth(){
+    AssociativeArray<Integer, Integer> testArray = new AssociativeArray<Integer, Integer>();
+    for (int i = 0; i < 1000; i++) {
+      testArray.set(i, i * i);
+    }
+    assertEquals(1000, testArray.size(), "growth size");
+    try {
+      for (int i = 0; i < 1000; i++) {
+        assertEquals(i * i, testArray.get(i), "growth example");
+      }
+    } catch (Exception e) {
+      fail("growth example");
+    }
+    /**
+     * presized arrays, and arrays that are told to get bigger
+     */
+    AssociativeArray<Integer, Integer> presized = new AssociativeArray<Integer, Integer>(0);
+    presized.ensureCapacity(100);
+    for (int i = 0; i < 100; i++) {
+      presized.set(i, i);
+    }
+    assertEquals(100, presized.size(), "presized size");
+    assertTrue(presized.hasKey(99), "presized hasKey");
+  }
+  /**
+   * Tests on getOrDefault() and tryGet()
+   */
+  @Test
+  public void hyeonKimLookups(){
+    AssociativeArray<String, String> testArray = new AssociativeArray<String, String>();
+    testArray.set("hello", "world");
+    testArray.set("nothing", null);
+    assertEquals("world", testArray.getOrDefault("hello", "default"), "getOrDefault hit");
+    assertEquals("default", testArray.getOrDefault("bye", "default"), "getOrDefault miss");
+    assertEquals(null, testArray.getOrDefault("nothing", "default"), "getOrDefault null value");
+    assertEquals("world", testArray.tryGet("hello").get(), "tryGet hit");
+    assertFalse(testArray.tryGet("bye").isPresent(), "tryGet miss");
+  }
+  /**
+   * Tests on lightweight KeyNotFoundExceptions
+   */
+  @Test
+  public void hyeonKimLightweightExceptions(){
+    AssociativeArray<String, String> testArray = new AssociativeArray<String, String>();
+    testArray.setLightweightExceptions(true);
+    try {
+      testArray.get("missing");
+      fail("lightweight exception example");
+    } catch (KeyNotFoundException e) {
+      assertEquals(0, e.getStackTrace().length, "lightweight exceptions have no stack trace");
+    }
+    testArray.setLightweightExceptions(false);
+    try {
+      testArray.get("missing");
+      fail("regular exception example");
+    } catch (KeyNotFoundException e) {
+      assertTrue(e.getStackTrace().length > 0, "regular exceptions have a stack trace");
+    }
+  }
+  /**
+   * Tests on removing in both the ordered and the unordered modes,
+   * compared against java.util.HashMap
+   */
+  @Test
+  public void hyeonKimChurn(){
+    for (int mode = 0; mode < 2 * AssociativeArray.Probing.values().length; mode++) {
+      AssociativeArray.Probing probing = AssociativeArray.Probing.values()[mode / 2];
+      AssociativeArray<Integer, Integer> testArray =
+        new AssociativeArray<Integer, Integer>(0, 0.9f, 2.0f, probing);
+      testArray.setPreserveOrder(mode % 2 == 0);
+      HashMap<Integer, Integer> expected = new HashMap<Integer, Integer>();
+      Random random = new Random(207);
+      for (int i = 0; i < 20000; i++) {
+        int key = random.nextInt(500);
+        if (random.nextBoolean()) {
+          testArray.set(key, i);
+          expected.put(key, i);
+        } else {
+          testArray.remove(key);
+          expected.remove(key);
+        }
+      }
+      assertEquals(expected.size(), testArray.size(), "churn size");
+      for (int key = 0; key < 500; key++) {
+        assertEquals(expected.get(key), testArray.getOrDefault(key, null), "churn example");
+      }
+    }
+    /**
+     * the ordered mode keeps the insertion order after removing
+     */
+    AssociativeArray<String, Integer> ordered = new AssociativeArray<String, Integer>();
+    for (int i = 0; i < 10; i++) {
+      ordered.set("k" + i, i);
+    }
+    for (int i = 0; i < 10; i += 2) {
+      ordered.remove("k" + i);
+    }
+    ordered.set("k0", 0);
+    assertEquals("{ k1: 1, k3: 3, k5: 5, k7: 7, k9: 9, k0: 0 }", ordered.toString(), "ordered removal");
+  }
+  /**
+   * Tests on the primitive-specialized associative arrays, compared
+   * against java.util.HashMap
+   */
+  @Test
+  public void hyeonKimPrimitives(){
+    IntIntAssociativeArray ii = new IntIntAssociativeArray();
+    LongObjectAssociativeArray<String> lo = new LongObjectAssociativeArray<String>();
+    ObjectIntAssociativeArray<String> oi = new ObjectIntAssociativeArray<String>();
+    HashMap<Integer, Integer> expected = new HashMap<Integer, Integer>();
+    Random random = new Random(151);
+    for (int i = 0; i < 20000; i++) {
+      int key = random.nextInt(300) - 10;
+      if (random.nextBoolean()) {
+        ii.set(key, i);
+        lo.set(key, "v" + i);
+        oi.set((key == 0) ? null : "k" + key, i);
+        expected.put(key, i);
+      } else {
+        ii.remove(key);
+        lo.remove(key);
+        oi.remove((key == 0) ? null : "k" + key);
+        expected.remove(key);
+      }
+    }
+    assertEquals(expected.size(), ii.size(), "IntInt size");
+    assertEquals(expected.size(), lo.size(), "LongObject size");
+    assertEquals(expected.size(), oi.size(), "ObjectInt size");
+    for (int key = -10; key < 290; key++) {
+      Integer value = expected.get(key);
+      assertEquals(value != null, ii.hasKey(key), "IntInt hasKey");
+      assertEquals((value == null) ? -1 : value, ii.getOrDefault(key, -1), "IntInt example");
+      assertEquals((value == null) ? null : "v" + value, lo.getOrDefault(key, null), "LongObject example");
+      assertEquals((value == null) ? -1 : value, oi.getOrDefault((key == 0) ? null : "k" + key, -1), "ObjectInt example");
+    }
+  }
+  /**
+   * Tests on the off-heap associative array, compared against
+   * java.util.HashMap
+   */
+  @Test
+  public void hyeonKimOffHeap(){
+    OffHeapAssociativeArray<String, String> testArray =
+      new OffHeapAssociativeArray<String, String>(Serializer.STRING, Serializer.STRING, 0, 256);
+    HashMap<String, String> expected = new HashMap<String, String>();
+    Random random = new Random(209);
+    for (int i = 0; i < 20000; i++) {
+      int n = random.nextInt(300);
+      String key = (n == 0) ? null : ((n % 3 == 0) ? "cl\u00e9" : "key") + n;
+      if (random.nextBoolean()) {
+        String value = (n == 1) ? null : "value" + i + "\u2713\ud83d\ude00".repeat(n % 5);
+        testArray.set(key, value);
+        expected.put(key, value);
+      } else {
+        testArray.remove(key);
+        expected.remove(key);
+      }
+    }
+    assertEquals(expected.size(), testArray.size(), "off-heap size");
+    for (int n = 0; n < 300; n++) {
+      String key = (n == 0) ? null : ((n % 3 == 0) ? "cl\u00e9" : "key") + n;
+      assertEquals(expected.containsKey(key), testArray.hasKey(key), "off-heap hasKey");
+      assertEquals(expected.get(key), testArray.getOrDefault(key, null), "off-heap example");
+    }
+    testArray.close();
+    try {
+      testArray.size();
+      fail("closed off-heap array");
+    } catch (IllegalStateException e) {
+      // closed arrays may not be used
+    }
+    testArray.close();
+    try {
+      testArray.hasKey("key1");
+      fail("twice closed off-heap array");
+    } catch (IllegalStateException e) {
+      // closing again does nothing, and the array stays closed
+    }
+  }
+  /**
+   * Tests on the concurrent associative array with several threads
+   */
+  @Test
+  public void hyeonKimConcurrent() throws InterruptedException {
+    ConcurrentAssociativeArray<Integer, String> testArray =
+      new ConcurrentAssociativeArray<Integer, String>(4);
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      final int id = t;
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < 5000; i++) {
+          testArray.putIfAbsent(i, "t" + id);
+          testArray.computeIfAbsent(5000 + i, (key) -> "c" + key);
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(10000, testArray.size(), "concurrent size");
+    assertEquals("c7000", testArray.getOrDefault(7000, null), "computeIfAbsent example");
+    assertFalse(testArray.putIfAbsent(0, "again"), "putIfAbsent on existing key");
+    assertTrue(testArray.replace(0, "replaced"), "replace on existing key");
+    assertFalse(testArray.replace(-1, "replaced"), "replace on missing key");
+    assertTrue(testArray.replace(0, "replaced", "twice"), "replace with expected value");
+    assertEquals("twice", testArray.getOrDefault(0, null), "replace example");
+    /**
+     * lock-free reads never see a value that was not set for their key,
+     * even while writers grow, shrink, and compact the segments
+     */
+    ConcurrentAssociativeArray<Integer, String> churn =
+      new ConcurrentAssociativeArray<Integer, String>(2);
+    AtomicInteger wrong = new AtomicInteger();
+    Thread[] workers = new Thread[4];
+    for (int t = 0; t < workers.length; t++) {
+      final boolean writer = (t % 2 == 0);
+      workers[t] = new Thread(() -> {
+        Random random = new Random();
+        for (int i = 0; i < 200000; i++) {
+          int key = random.nextInt(20000);
+          if (writer) {
+            if (random.nextBoolean()) {
+              churn.set(key, "v" + key);
+            } else {
+              churn.remove(key);
+            }
+          } else {
+            String value = churn.getOrDefault(key, null);
+            if (value != null && !value.equals("v" + key)) {
+              wrong.incrementAndGet();
+            }
+          }
+        }
+      });
+      workers[t].start();
+    }
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    assertEquals(0, wrong.get(), "consistent lock-free reads");
+  }
+  /**
+   * Tests on the copy-on-write associative array
+   */
+  @Test
+  public void hyeonKimCopyOnWrite(){
+    CopyOnWriteAssociativeArray<String, String> testArray =
+      new CopyOnWriteAssociativeArray<String, String>();
+    testArray.set("a", "apple");
+    CopyOnWriteAssociativeArray<String, String> copy = testArray.clone();
+    testArray.update((pairs) -> {
+      pairs.set("b", "banana");
+      pairs.set("c", "cherry");
+      pairs.remove("a");
+    });
+    assertEquals("{ b: banana, c: cherry }", testArray.toString(), "batched update");
+    assertEquals("{ a: apple }", copy.toString(), "clones keep their snapshot");
+    try {
+      testArray.update((pairs) -> {
+        pairs.set("d", "date");
+        throw new IllegalStateException();
+      });
+      fail("update should rethrow");
+    } catch (IllegalStateException e) {
+      assertFalse(testArray.hasKey("d"), "failed updates are not published");
+    }
+  }
+  /**
+   * Tests on the sorted associative array
+   */
+  @Test
+  public void hyeonKimSorted(){
+    SortedAssociativeArray<String, Integer> testArray = SortedAssociativeArray.naturalOrder();
+    String[] words = { "pear", "apple", "fig", "plum", "peach", "banana", "cherry" };
+    for (int i = 0; i < words.length; i++) {
+      testArray.set(words[i], i);
+    }
+    testArray.remove("cherry");
+    assertEquals("{ apple: 1, banana: 5, fig: 2, peach: 4, pear: 0, plum: 3 }", testArray.toString(), "sorted order");
+    assertEquals("fig", testArray.floorKey("grape"), "floorKey example");
+    assertEquals("peach", testArray.ceilingKey("grape"), "ceilingKey example");
+    assertEquals(null, testArray.floorKey("aardvark"), "floorKey before the first key");
+    StringBuilder range = new StringBuilder();
+    testArray.forEachInRange("b", "pear", (key, value) -> range.append(key).append(" "));
+    assertEquals("banana fig peach ", range.toString(), "range example");
+    StringBuilder prefix = new StringBuilder();
+    testArray.forEachFrom("pe", (key) -> key.startsWith("pe"), (key, value) -> prefix.append(key).append(" "));
+    assertEquals("peach pear ", prefix.toString(), "prefix example");
+  }
+  /**
+   * Tests on keeping insertion order as the index widens its slots
+   */
+  @Test
+  public void hyeonKimInsertionOrder(){
+    AssociativeArray<Integer, Integer> testArray = new AssociativeArray<Integer, Integer>();
+    for (int i = 40000; i > 0; i--) {
+      testArray.set(i, i);
+    }
+    for (int i = 40000; i > 3; i--) {
+      testArray.remove(i);
+    }
+    testArray.set(0, 0);
+    assertEquals("{ 3: 3, 2: 2, 1: 1, 0: 0 }", testArray.toString(), "insertion order");
+    try {
+      assertEquals(3, testArray.find(0), "positions follow insertion order");
+    } catch (KeyNotFoundException e) {
+      fail("insertion order");
+    }
+  }
+  /**
+   * Tests on the probe lengths of Robin Hood hashing
+   */
+  @Test
+  public void hyeonKimProbeLengths(){
+    AssociativeArray<Integer, Integer> testArray =
+      new AssociativeArray<Integer, Integer>(0, 0.9f, 2.0f, AssociativeArray.Probing.ROBIN_HOOD);
+    assertEquals(0, testArray.maxProbeLength(), "empty max probe length");
+    for (int i = 0; i < 10000; i++) {
+      testArray.set(i * 7919, i);
+    }
+    assertTrue(testArray.averageProbeLength() >= 1, "average probe length");
+    assertTrue(testArray.maxProbeLength() >= testArray.averageProbeLength(), "max probe length");
+  }
+  /**
+   * Tests on group probing, where removals leave deleted slots behind
+   */
+  @Test
+  public void hyeonKimGroupProbing(){
+    AssociativeArray<String, Integer> testArray =
+      new AssociativeArray<String, Integer>(100, 0.875f, 2.0f, AssociativeArray.Probing.GROUP);
+    testArray.setPreserveOrder(false);
+    for (int round = 0; round < 50; round++) {
+      for (int i = 0; i < 100; i++) {
+        testArray.set("r" + round + "k" + i, i);
+      }
+      assertEquals(100, testArray.size(), "group size");
+      assertFalse(testArray.hasKey("r" + (round - 1) + "k0"), "group miss");
+      assertEquals(99, testArray.getOrDefault("r" + round + "k99", -1), "group hit");
+      for (int i = 0; i < 100; i++) {
+        testArray.remove("r" + round + "k" + i);
+      }
+      assertEquals(0, testArray.size(), "group empty");
+    }
+    testArray.set(null, 1);
+    assertEquals(1, testArray.getOrDefault(null, -1), "group null key");
+    assertTrue(testArray.maxProbeLength() >= 1, "group probe length");
+  }
+  /**
+   * Tests on the cuckoo-hashed associative array, compared against
+   * java.util.HashMap
+   */
+  @Test
+  public void hyeonKimCuckoo(){
+    CuckooAssociativeArray<String, Integer> testArray = new CuckooAssociativeArray<String, Integer>(0);
+    HashMap<String, Integer> expected = new HashMap<String, Integer>();
+    Random random = new Random(311);
+    for (int i = 0; i < 50000; i++) {
+      int n = random.nextInt(5000);
+      String key = (n == 0) ? null : "key" + n;
+      if (random.nextInt(3) != 0) {
+        testArray.set(key, i);
+        expected.put(key, i);
+      } else {
+        testArray.remove(key);
+        expected.remove(key);
+      }
+    }
+    assertEquals(expected.size(), testArray.size(), "cuckoo size");
+    for (int n = 0; n < 5000; n++) {
+      String key = (n == 0) ? null : "key" + n;
+      assertEquals(expected.containsKey(key), testArray.hasKey(key), "cuckoo hasKey");
+      assertEquals(expected.get(key), testArray.getOrDefault(key, null), "cuckoo example");
+    }
+    /**
+     * "Aa" and "BB" have the same hash code, so all 64 of these keys do
+     * too, and no choice of seeds can put them in separate buckets
+     */
+    CuckooAssociativeArray<String, Integer> colliding = new CuckooAssociativeArray<String, Integer>();
+    for (int i = 0; i < 64; i++) {
+      StringBuilder key = new StringBuilder();
+      for (int bit = 0; bit < 6; bit++) {
+        key.append(((i >> bit) & 1) == 0 ? "Aa" : "BB");
+      }
+      colliding.set(key.toString(), i);
+    }
+    assertEquals(64, colliding.size(), "colliding size");
+    assertEquals(63, colliding.getOrDefault("BBBBBBBBBBBB", -1), "colliding example");
+    colliding.remove("AaAaAaAaAaAa");
+    assertFalse(colliding.hasKey("AaAaAaAaAaAa"), "colliding remove");
+    assertEquals(63, colliding.clone().size(), "colliding clone");
+  }
+  /**
+   * Tests on setAll(), getAll(), and removeAll()
+   */
+  @Test
+  public void hyeonKimBatch(){
+    String[] keys = new String[1000];
+    Integer[] values = new Integer[1000];
+    for (int i = 0; i < 1000; i++) {
+      keys[i] = "k" + i;
+      values[i] = i;
+    }
+    AssociativeArray<String, Integer> testArray = new AssociativeArray<String, Integer>(0);
+    testArray.set("k0", -1);
+    testArray.set("other", -2);
+    testArray.setAll(keys, values);
+    assertEquals(1001, testArray.size(), "setAll size");
+    assertEquals(0, testArray.getOrDefault("k0", null), "setAll replaces");
+    AssociativeArray<String, Integer> copy = new AssociativeArray<String, Integer>();
+    copy.set("first", 1);
+    copy.setAll(testArray);
+    assertEquals(1002, copy.size(), "setAll copy size");
+    assertEquals(999, copy.getOrDefault("k999", null), "setAll copy example");
+    String[] wanted = { "k5", "missing", "other" };
+    Integer[] out = new Integer[3];
+    assertEquals(2, testArray.getAll(wanted, out), "getAll found");
+    assertEquals(5, out[0], "getAll hit");
+    assertEquals(null, out[1], "getAll miss");
+    assertEquals(-2, out[2], "getAll hit");
+    assertEquals(1000, testArray.removeAll(Arrays.asList(keys)), "removeAll removed");
+    assertEquals(0, testArray.removeAll(Arrays.asList(keys)), "removeAll again");
+    assertEquals("{ other: -2 }", testArray.toString(), "removeAll leaves the rest");
+    try {
+      testArray.setAll(keys, new Integer[1]);
+      fail("mismatched setAll");
+    } catch (IllegalArgumentException e) {
+      // keys and values must match up
+    }
+    /**
+     * reporting arrays print one line per batch
+     */
+    StringWriter report = new StringWriter();
+    ReportingAssociativeArray<String, Integer> reporting =
+      new ReportingAssociativeArray<String, Integer>("r", new PrintWriter(report, true));
+    reporting.setAll(keys, values);
+    reporting.getAll(wanted, out);
+    reporting.removeAll(Arrays.asList(keys));
+    assertEquals("r.setAll(1000 pairs): size = 1000\n"
+      + "r.getAll(3 keys) = 1 found\n"
+      + "r.removeAll(...) = 1000 removed, size = 0\n",
+      report.toString().replace(System.lineSeparator(), "\n"), "batch reports");
+  }
+  /**
+   * Tests on forEach(), iterator(), and cursor()
+   */
+  @Test
+  public void hyeonKimIteration(){
+    AssociativeArray<String, Integer> testArray = new AssociativeArray<String, Integer>();
+    for (int i = 0; i < 10; i++) {
+      testArray.set("k" + i, i);
+    }
+    testArray.remove("k3");
+    StringBuilder visited = new StringBuilder();
+    testArray.forEach((key, value) -> visited.append(key).append("=").append(value).append(" "));
+    assertEquals("k0=0 k1=1 k2=2 k4=4 k5=5 k6=6 k7=7 k8=8 k9=9 ", visited.toString(), "forEach order");
+    /**
+     * the cursor can replace values as it goes, and start over
+     */
+    AssociativeArray<String, Integer>.Cursor cursor = testArray.cursor();
+    int count = 0;
+    while (cursor.next()) {
+      cursor.setValue(cursor.value() * 10);
+      count++;
+    }
+    assertEquals(9, count, "cursor count");
+    assertFalse(cursor.next(), "cursor stays at the end");
+    cursor.reset();
+    assertTrue(cursor.next(), "cursor reset");
+    assertEquals("k0", cursor.key(), "cursor key");
+    assertEquals(90, testArray.getOrDefault("k9", null), "cursor setValue");
+    /**
+     * iterators may remove pairs, in both the ordered and the unordered modes
+     */
+    for (int mode = 0; mode < 2; mode++) {
+      AssociativeArray<Integer, Integer> numbers = new AssociativeArray<Integer, Integer>();
+      numbers.setPreserveOrder(mode == 0);
+      for (int i = 0; i < 100; i++) {
+        numbers.set(i, i);
+      }
+      int sum = 0;
+      for (Iterator<Map.Entry<Integer, Integer>> it = numbers.iterator(); it.hasNext(); ) {
+        Map.Entry<Integer, Integer> entry = it.next();
+        sum += entry.getValue();
+        if (entry.getKey() % 2 == 0) {
+          it.remove();
+        }
+      }
+      assertEquals(4950, sum, "iterator visits every pair once");
+      assertEquals(50, numbers.size(), "iterator remove");
+      for (Map.Entry<Integer, Integer> entry : numbers) {
+        assertEquals(1, entry.getKey() % 2, "iterator removed the even keys");
+      }
+    }
+    /**
+     * adding or removing pairs behind an iterator's back fails fast
+     */
+    try {
+      for (Map.Entry<String, Integer> entry : testArray) {
+        testArray.set(entry.getKey() + "!", 0);
+      }
+      fail("iterator comodification");
+    } catch (ConcurrentModificationException e) {
+      // iterators fail fast
+    }
+    try {
+      testArray.forEach((key, value) -> testArray.remove(key));
+      fail("forEach comodification");
+    } catch (ConcurrentModificationException e) {
+      // forEach fails fast
+    }
+    cursor.reset();
+    testArray.set("new", 1);
+    try {
+      cursor.next();
+      fail("cursor comodification");
+    } catch (ConcurrentModificationException e) {
+      // cursors fail fast
+    }
+  }
+  /**
+   * Tests on keys(), values(), entries(), and spliterator()
+   */
+  @Test
+  public void hyeonKimStreams(){
+    AssociativeArray<Integer, Integer> testArray = new AssociativeArray<Integer, Integer>();
+    for (int i = 0; i < 100000; i++) {
+      testArray.set(i, i % 7);
+    }
+    for (int i = 0; i < 100000; i += 3) {
+      testArray.remove(i);
+    }
+    long expectedSum = 0;
+    for (int i = 0; i < 100000; i++) {
+      if (i % 3 != 0) {
+        expectedSum += i;
+      }
+    }
+    assertEquals(expectedSum, testArray.keys().parallel().mapToLong(Integer::longValue).sum(), "parallel key sum");
+    assertEquals(expectedSum, testArray.parallelStream().mapToLong(Map.Entry::getKey).sum(), "parallel entry sum");
+    assertEquals(testArray.size(), (int) testArray.values().count(), "values count");
+    assertEquals("1 2 4 5", testArray.keys().limit(4).map(String::valueOf).collect(Collectors.joining(" ")), "key order");
+    /**
+     * with holes, the spliterator knows its own size but only estimates
+     * the sizes of its parts, and streaming does not disturb iterators
+     */
+    Iterator<Map.Entry<Integer, Integer>> it = testArray.iterator();
+    it.next();
+    Spliterator<Map.Entry<Integer, Integer>> whole = testArray.spliterator();
+    assertEquals(testArray.size(), (int) whole.getExactSizeIfKnown(), "spliterator size");
+    assertFalse(whole.hasCharacteristics(Spliterator.SUBSIZED), "spliterator with holes");
+    Spliterator<Map.Entry<Integer, Integer>> half = whole.trySplit();
+    assertEquals(-1, (int) half.getExactSizeIfKnown(), "split size unknown");
+    assertEquals(testArray.size(), (int) (half.estimateSize() + whole.estimateSize()), "split estimates");
+    long[] count = new long[1];
+    half.forEachRemaining((entry) -> count[0]++);
+    whole.forEachRemaining((entry) -> count[0]++);
+    assertEquals(testArray.size(), (int) count[0], "split parts skip holes");
+    assertEquals(testArray.size(), (int) testArray.keys().count(), "keys count");
+    assertEquals(2, it.next().getKey(), "streams leave iterators alone");
+    /**
+     * without holes, the spliterator splits evenly and knows the exact
+     * size of each part
+     */
+    AssociativeArray<Integer, Integer> dense = new AssociativeArray<Integer, Integer>();
+    for (int i = 0; i < 1001; i++) {
+      dense.set(i, i);
+    }
+    Spliterator<Map.Entry<Integer, Integer>> all = dense.spliterator();
+    assertTrue(all.hasCharacteristics(Spliterator.SUBSIZED), "spliterator subsized");
+    Spliterator<Map.Entry<Integer, Integer>> first = all.trySplit();
+    assertEquals(500, (int) first.getExactSizeIfKnown(), "split size");
+    assertEquals(501, (int) all.getExactSizeIfKnown(), "split rest");
+    try {
+      testArray.keys().forEach((key) -> testArray.set(-key, 0));
+      fail("stream comodification");
+    } catch (ConcurrentModificationException e) {
+      // streams fail fast
+    }
+  }
+  /**
+   * Tests on replaceAll(), mapValues(), filter(), and reduce(), both
+   * sequentially and (with a threshold of 1) in parallel
+   */
+  @Test
+  public void hyeonKimBulk(){
+    for (long threshold : new long[] { Long.MAX_VALUE, 1 }) {
+      AssociativeArray<Integer, Integer> testArray = new AssociativeArray<Integer, Integer>();
+      for (int i = 0; i < 50000; i++) {
+        testArray.set(i, i);
+      }
+      testArray.remove(0);
+      testArray.replaceAll(threshold, (key, value) -> value * 2);
+      assertEquals(99998, testArray.getOrDefault(49999, null), "replaceAll");
+      AssociativeArray<Integer, String> strings = testArray.mapValues(threshold, (value) -> "v" + value);
+      assertEquals(49999, strings.size(), "mapValues size");
+      assertEquals("v2", strings.getOrDefault(1, null), "mapValues example");
+      assertFalse(strings.hasKey(0), "mapValues skips removed pairs");
+      AssociativeArray<Integer, Integer> evens = testArray.filter(threshold, (key, value) -> key % 2 == 0);
+      assertEquals(24999, evens.size(), "filter size");
+      assertFalse(evens.hasKey(1), "filter rejects");
+      assertEquals(4, evens.getOrDefault(2, null), "filter accepts");
+      assertEquals(2, evens.keys().findFirst().get(), "filter keeps the order");
+      long sum = testArray.reduce(threshold, (key, value) -> (long) value, Long::sum);
+      assertEquals(49999L * 50000L, sum, "reduce");
+      String none = evens.reduce(threshold, (key, value) -> null, (a, b) -> a);
+      assertTrue(none == null, "reduce with no results");
+    }
+  }
+  /**
+   * Tests on writeTo(), which should match toString()
+   */
+  @Test
+  public void hyeonKimWriteTo() throws Exception {
+    AssociativeArray<String, String> testArray = new AssociativeArray<String, String>();
+    StringWriter empty = new StringWriter();
+    testArray.writeTo(empty);
+    assertEquals("{ }", empty.toString(), "writeTo empty");
+    testArray.set(null, "nothing");
+    testArray.set("a", null);
+    testArray.set("b", "bee");
+    testArray.set("c", "sea");
+    testArray.remove("b");
+    StringWriter out = new StringWriter();
+    testArray.writeTo(out);
+    assertEquals("{ null: nothing, a: null, c: sea }", out.toString(), "writeTo example");
+    assertEquals(out.toString(), testArray.toString(), "writeTo matches toString");
+    AssociativeArray<Integer, Integer> big = new AssociativeArray<Integer, Integer>();
+    for (int i = 0; i < 100000; i++) {
+      big.set(i, i);
+    }
+    String text = big.toString();
+    assertTrue(text.startsWith("{ 0: 0, 1: 1, "), "big toString start");
+    assertTrue(text.endsWith(", 99999: 99999 }"), "big toString end");
+  }
+  /**
+   * Tests on clone() and lazyClone() for each kind of probing, with
+   * holes left by removed pairs
+   */
+  @Test
+  public void hyeonKimClone(){
+    for (AssociativeArray.Probing probing : AssociativeArray.Probing.values()) {
+      AssociativeArray<String, Integer> testArray =
+        new AssociativeArray<String, Integer>(0, 0.5f, 2.0f, probing);
+      for (int i = 0; i < 1000; i++) {
+        testArray.set("k" + i, i);
+      }
+      for (int i = 0; i < 1000; i += 3) {
+        testArray.remove("k" + i);
+      }
+      AssociativeArray<String, Integer> copy = testArray.clone();
+      AssociativeArray<String, Integer> lazy = testArray.lazyClone();
+      assertEquals(testArray.toString(), copy.toString(), "clone order");
+      assertEquals(testArray.toString(), lazy.toString(), "lazy clone order");
+      copy.set("k1", -1);
+      copy.remove("k2");
+      copy.set("new", 0);
+      lazy.set("k4", -4);
+      lazy.remove("k5");
+      assertEquals(1, testArray.getOrDefault("k1", null), "clone does not write through");
+      assertEquals(4, testArray.getOrDefault("k4", null), "lazy clone does not write through");
+      assertTrue(testArray.hasKey("k2") && testArray.hasKey("k5"), "removing from clones");
+      assertFalse(testArray.hasKey("new"), "adding to clones");
+      assertEquals(-4, lazy.getOrDefault("k4", null), "lazy clone changes");
+      assertEquals(665, lazy.size(), "lazy clone size");
+      /**
+       * the original stays independent of a lazy clone too
+       */
+      AssociativeArray<String, Integer> lazier = testArray.lazyClone();
+      AssociativeArray<String, Integer>.Cursor cursor = testArray.cursor();
+      cursor.next();
+      cursor.setValue(100);
+      testArray.remove("k7");
+      assertEquals(1, lazier.getOrDefault("k1", null), "original does not write through");
+      assertTrue(lazier.hasKey("k7"), "removing from the original");
+      for (int i = 0; i < 1000; i++) {
+        lazier.set("more" + i, i);
+      }
+      assertEquals(1666, lazier.size(), "lazy clone grows");
+      assertEquals(665, testArray.size(), "original size");
+    }
+  }
+  /**
+   * Tests on PersistentAssociativeArray
+   */
+  @Test
+  public void hyeonKimPersistent(){
+    /**
+     * old versions keep their pairs
+     */
+    PersistentAssociativeArray<String, Integer> empty =
+      new PersistentAssociativeArray<String, Integer>();
+    PersistentAssociativeArray<String, Integer> one = empty.set("a", 1);
+    PersistentAssociativeArray<String, Integer> two = one.set("b", 2);
+    PersistentAssociativeArray<String, Integer> changed = two.set("a", 10);
+    PersistentAssociativeArray<String, Integer> removed = changed.remove("b");
+    assertEquals(0, empty.size(), "empty version");
+    assertFalse(empty.hasKey("a"), "empty version has no keys");
+    assertEquals(1, one.getOrDefault("a", null), "first version");
+    assertFalse(one.hasKey("b"), "first version does not see later keys");
+    assertEquals(1, two.getOrDefault("a", null), "second version");
+    assertEquals(10, changed.getOrDefault("a", null), "changed version");
+    assertEquals(2, changed.size(), "changing does not add");
+    assertFalse(removed.hasKey("b"), "removed version");
+    assertTrue(changed.hasKey("b"), "removing leaves older versions");
+    assertTrue(removed.remove("zzz") == removed, "removing a missing key");
+    assertEquals("{ a: 10 }", removed.toString(), "toString");
+    /**
+     * null keys and keys with equal hash codes
+     */
+    PersistentAssociativeArray<String, String> odd =
+      new PersistentAssociativeArray<String, String>()
+        .set(null, "null").set("Aa", "x").set("BB", "y");
+    assertEquals("null", odd.getOrDefault(null, "missing"), "null key");
+    assertEquals("x", odd.getOrDefault("Aa", "missing"), "colliding key");
+    assertEquals("y", odd.getOrDefault("BB", "missing"), "colliding key");
+    PersistentAssociativeArray<String, String> fewer = odd.remove("Aa");
+    assertEquals("y", fewer.getOrDefault("BB", "missing"), "after a collision");
+    assertFalse(fewer.hasKey("Aa"), "removing a colliding key");
+    assertEquals(2, fewer.size(), "size after a collision");
+    /**
+     * random changes against a HashMap, through versions and builders
+     */
+    Random random = new Random(23);
+    HashMap<Integer, Integer> expected = new HashMap<Integer, Integer>();
+    PersistentAssociativeArray<Integer, Integer> current =
+      new PersistentAssociativeArray<Integer, Integer>();
+    for (int round = 0; round < 20; round++) {
+      HashMap<Integer, Integer> before = new HashMap<Integer, Integer>(expected);
+      PersistentAssociativeArray<Integer, Integer> snapshot = current;
+      PersistentAssociativeArray.Builder<Integer, Integer> builder =
+        (round % 2 == 0) ? current.toBuilder() : null;
+      for (int i = 0; i < 500; i++) {
+        Integer key = random.nextInt(2000);
+        if (random.nextInt(3) == 0) {
+          expected.remove(key);
+          if (builder == null) {
+            current = current.remove(key);
+          } else {
+            builder.remove(key);
+          }
+        } else {
+          expected.put(key, i);
+          if (builder == null) {
+            current = current.set(key, i);
+          } else {
+            builder.set(key, i);
+          }
+        }
+      }
+      if (builder != null) {
+        current = builder.build();
+        // the builder goes on without changing what it built
+        builder.set(-1, -1).remove(expected.keySet().iterator().next());
+      }
+      assertEquals(expected.size(), current.size(), "size after round " + round);
+      assertEquals(before.size(), snapshot.size(), "old size after round " + round);
+      for (int key = -1; key < 2000; key++) {
+        assertEquals(expected.get(key), current.getOrDefault(key, null),
+          "value of " + key + " after round " + round);
+        assertEquals(before.get(key), snapshot.getOrDefault(key, null),
+          "old value of " + key + " after round " + round);
+      }
+      HashMap<Integer, Integer> seen = new HashMap<Integer, Integer>();
+      current.forEach(seen::put);
+      assertEquals(expected, seen, "forEach after round " + round);
+    }
+    /**
+     * a builder from nothing
+     */
+    PersistentAssociativeArray.Builder<String, Integer> fresh =
+      PersistentAssociativeArray.builder();
+    for (int i = 0; i < 10000; i++) {
+      fresh.set("k" + i, i);
+    }
+    PersistentAssociativeArray<String, Integer> built = fresh.build();
+    assertEquals(10000, built.size(), "built size");
+    assertEquals(9999, built.getOrDefault("k9999", null), "built value");
+  }
+  /**
+   * Tests on LruAssociativeArray
+   */
+  @Test
+  public void hyeonKimLru(){
+    StringBuilder evicted = new StringBuilder();
+    LruAssociativeArray<String, Integer> cache =
+      new LruAssociativeArray<String, Integer>(3,
+        (key, value) -> evicted.append(key).append("=").append(value).append(" "));
+    cache.set("a", 1);
+    cache.set("b", 2);
+    cache.set("c", 3);
+    assertEquals(1, cache.getOrDefault("a", null), "hit");
+    cache.set("d", 4);
+    assertEquals("b=2 ", evicted.toString(), "evicts the least recently used");
+    assertFalse(cache.hasKey("b"), "evicted key");
+    assertEquals("{ c: 3, a: 1, d: 4 }", cache.toString(), "order of use");
+    cache.set("c", 30);
+    cache.set("e", 5);
+    assertEquals("b=2 a=1 ", evicted.toString(), "setting counts as a use");
+    assertTrue(cache.getOrDefault("a", null) == null, "miss");
+    assertEquals(20, cache.computeIfAbsent("f", key -> 20), "computed");
+    assertEquals(30, cache.computeIfAbsent("c", key -> -1), "not recomputed");
+    assertEquals("{ e: 5, f: 20, c: 30 }", cache.toString(), "order after computing");
+    assertEquals(2, cache.hits(), "hits");
+    assertEquals(2, cache.misses(), "misses");
+    assertEquals(3, cache.evictions(), "evictions");
+    cache.remove("c");
+    assertEquals(2, cache.size(), "size after remove");
+    assertEquals("b=2 a=1 d=4 ", evicted.toString(), "removing is not evicting");
+    cache.set(null, 0);
+    cache.set("g", 7);
+    assertEquals(0, cache.getOrDefault(null, null), "null key");
+    assertEquals(3, cache.size(), "full again");
+    /**
+     * random use against a model that keeps keys in order of use
+     */
+    Random random = new Random(24);
+    LruAssociativeArray<Integer, Integer> big =
+      new LruAssociativeArray<Integer, Integer>(100);
+    LinkedHashMap<Integer, Integer> model =
+      new LinkedHashMap<Integer, Integer>(16, 0.75f, true);
+    for (int i = 0; i < 100000; i++) {
+      int key = random.nextInt(300);
+      switch (random.nextInt(3)) {
+        case 0:
+          assertEquals(model.get(key), big.getOrDefault(key, null), "lookup " + i);
+          break;
+        case 1:
+          model.put(key, i);
+          big.set(key, i);
+          if (model.size() > 100) {
+            model.remove(model.keySet().iterator().next());
+          }
+          break;
+        default:
+          model.remove(key);
+          big.remove(key);
+      }
+      assertEquals(model.size(), big.size(), "size " + i);
+    }
+    assertEquals(model.toString().replace("=", ": ").replace("{", "{ ").replace("}", " }"),
+      big.toString(), "final order");
+    LruAssociativeArray<Integer, Integer> copy = big.clone();
+    copy.set(-1, -1);
+    assertFalse(big.hasKey(-1), "clone is independent");
+  }
+  /**
+   * Tests on TinyLfuAssociativeArray
+   */
+  @Test
+  public void hyeonKimTinyLfu(){
+    /**
+     * hot keys survive a scan that would flush an LRU cache
+     */
+    TinyLfuAssociativeArray<String, Integer> cache =
+      new TinyLfuAssociativeArray<String, Integer>(100);
+    LruAssociativeArray<String, Integer> lru =
+      new LruAssociativeArray<String, Integer>(100);
+    for (int round = 0; round < 10; round++) {
+      for (int i = 0; i < 50; i++) {
+        if (cache.getOrDefault("hot" + i, null) == null) {
+          cache.set("hot" + i, i);
+        }
+        if (lru.getOrDefault("hot" + i, null) == null) {
+          lru.set("hot" + i, i);
+        }
+      }
+    }
+    for (int i = 0; i < 1000; i++) {
+      cache.set("cold" + i, i);
+      lru.set("cold" + i, i);
+    }
+    int tinyLfuHot = 0;
+    int lruHot = 0;
+    for (int i = 0; i < 50; i++) {
+      tinyLfuHot += cache.hasKey("hot" + i) ? 1 : 0;
+      lruHot += lru.hasKey("hot" + i) ? 1 : 0;
+    }
+    assertEquals(0, lruHot, "lru forgets the hot keys");
+    assertTrue(tinyLfuHot >= 45, "tinylfu keeps the hot keys: " + tinyLfuHot);
+    assertEquals(100, cache.size(), "full");
+    /**
+     * evictions, removals, and the listener stay consistent
+     */
+    HashMap<Integer, Integer> model = new HashMap<Integer, Integer>();
+    TinyLfuAssociativeArray<Integer, Integer> small =
+      new TinyLfuAssociativeArray<Integer, Integer>(50, (key, value) -> {
+        assertEquals(value, model.remove(key), "evicted pair " + key);
+      });
+    Random random = new Random(25);
+    int lookups = 0;
+    for (int i = 0; i < 100000; i++) {
+      int key = random.nextInt(200);
+      switch (random.nextInt(4)) {
+        case 0:
+          small.remove(key);
+          model.remove(key);
+          break;
+        case 1:
+          small.set(key, i);
+          model.put(key, i);
+          break;
+        default:
+          assertEquals(model.get(key), small.getOrDefault(key, null), "lookup " + i);
+          lookups++;
+      }
+      assertEquals(model.size(), small.size(), "size " + i);
+      assertTrue(small.size() <= 50, "bounded " + i);
+    }
+    assertEquals(lookups, small.hits() + small.misses(), "lookups counted");
+    TinyLfuAssociativeArray<Integer, Integer> copy = small.clone();
+    copy.remove(model.keySet().iterator().next());
+    assertEquals(model.size(), small.size(), "clone is independent");
+    /**
+     * a cache of one pair
+     */
+    TinyLfuAssociativeArray<String, String> one =
+      new TinyLfuAssociativeArray<String, String>(1);
+    one.set("a", "x");
+    one.set("b", "y");
+    assertEquals(1, one.size(), "capacity one");
+    assertEquals(1, one.evictions(), "capacity one evicts");
+  }
 } // AssocitativeArrayTest
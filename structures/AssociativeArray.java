@@ -1,16 +1,411 @@
 package structures;
 
-import static java.lang.reflect.Array.newInstance;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A basic implementation of Associative Arrays with keys of type K
  * and values of type V. Associative Arrays store key/value pairs
  * and permit you to look up values by key.
  *
+ * The pairs live in dense arrays, in the order they were added, and a
+ * separate, sparse hash index maps each key to the position of its
+ * pair. (This is the design of Python's dictionaries.) Lookups take
+ * O(1) time on average, while toString still shows the pairs in
+ * insertion order. Since only the index is sparse, and its slots are
+ * as narrow as the number of pairs allows, the hashing costs little
+ * memory.
+ *
+ * The index uses linear probing by default. For tables that should
+ * stay nearly full, the ROBIN_HOOD probing keeps the longest probe
+ * short, and GROUP probing checks eight slots per probe, which makes
+ * misses especially cheap. maxProbeLength and averageProbeLength report
+ * how long probes actually are.
+ *
+ * By default, an associative array keeps its pairs in insertion order
+ * (which is the order toString shows them in). Removing a pair leaves
+ * a hole behind, and the holes are squeezed out once they make up half
+ * of the array. If the order does not matter, setPreserveOrder(false)
+ * instead fills the hole with the last pair, which changes the order
+ * of the remaining pairs but never leaves holes.
+ *
+ * forEach, iterator, and cursor all walk the dense arrays directly, in
+ * the same order as toString. The cursor allocates nothing per pair.
+ * Like the iterators of java.util, they fail fast: adding or removing
+ * pairs other than through the iterator itself makes them throw
+ * ConcurrentModificationException, while replacing values does not.
+ * The streams from keys, values, and entries split the arrays into
+ * even halves, so parallel streams spread the work over all cores.
+ * replaceAll, mapValues, filter, and reduce run as fork/join tasks
+ * over ranges of the arrays once the array holds enough pairs.
+ *
  * @author Seunghyeon (Hyeon) Kim
  * @author Samuel A. Rebelsky
  */
-public class AssociativeArray<K, V> {
+public class AssociativeArray<K, V> implements Iterable<Map.Entry<K, V>> {
+  // +-------+-------------------------------------------------------
+  // | Types |
+  // +-------+
+
+  /**
+   * The ways the hash index can probe for a key.
+   */
+  public enum Probing {
+    /**
+     * Try the slot the key hashes to, then the slots after it, in order.
+     */
+    LINEAR {
+      HashIndex newIndex(int length, int capacity) {
+        return new LinearProbeIndex(length, capacity);
+      } // newIndex(int, int)
+    },
+
+    /**
+     * Like LINEAR, but keep the keys of each run sorted by how far they
+     * are from home (Robin Hood hashing), so that even at high load
+     * factors no key is far from home.
+     */
+    ROBIN_HOOD {
+      HashIndex newIndex(int length, int capacity) {
+        return new RobinHoodIndex(length, capacity);
+      } // newIndex(int, int)
+    },
+
+    /**
+     * Probe groups of eight slots at a time, comparing a few bits of
+     * the hash against all eight at once (as Swiss tables do), so that
+     * lookups, and misses in particular, rarely look past one group.
+     */
+    GROUP {
+      HashIndex newIndex(int length, int capacity) {
+        return new GroupProbeIndex(length, capacity);
+      } // newIndex(int, int)
+    };
+
+    /**
+     * Create an empty index with length slots that can refer to
+     * positions less than capacity.
+     */
+    abstract HashIndex newIndex(int length, int capacity);
+  } // enum Probing
+
+  /**
+   * A reusable position in an associative array. Call next to move to
+   * each pair in turn, and key, value, and setValue to work with the
+   * current pair. Moving the cursor allocates nothing, so one cursor
+   * can walk a table of any size, as many times as reset allows.
+   */
+  public class Cursor {
+    /**
+     * The position of the current pair, or -1 before the first.
+     */
+    int pos;
+
+    /**
+     * The value of modCount that the cursor expects.
+     */
+    int expectedModCount;
+
+    /**
+     * Create a cursor that stands before the first pair.
+     */
+    Cursor() {
+      this.reset();
+    } // Cursor()
+
+    /**
+     * Move back to before the first pair.
+     */
+    public void reset() {
+      this.pos = -1;
+      this.expectedModCount = AssociativeArray.this.modCount;
+    } // reset()
+
+    /**
+     * Move to the next pair, and determine whether there is one.
+     *
+     * @throws ConcurrentModificationException
+     *   when pairs were added or removed since the last reset.
+     */
+    public boolean next() {
+      this.checkForComodification();
+      int used = AssociativeArray.this.used;
+      Object[] keys = AssociativeArray.this.keys;
+      do {
+        this.pos++;
+      } while (this.pos < used && keys[this.pos] == REMOVED);
+      if (this.pos > used) {
+        this.pos = used;
+      }
+      return this.pos < used;
+    } // next()
+
+    /**
+     * Get the key of the current pair.
+     *
+     * @throws IllegalStateException
+     *   when the cursor is not at a pair.
+     */
+    @SuppressWarnings({ "unchecked" })
+    public K key() {
+      this.checkPosition();
+      return (K) AssociativeArray.this.keys[this.pos];
+    } // key()
+
+    /**
+     * Get the value of the current pair.
+     *
+     * @throws IllegalStateException
+     *   when the cursor is not at a pair.
+     */
+    @SuppressWarnings({ "unchecked" })
+    public V value() {
+      this.checkPosition();
+      return (V) AssociativeArray.this.values[this.pos];
+    } // value()
+
+    /**
+     * Replace the value of the current pair.
+     *
+     * @throws IllegalStateException
+     *   when the cursor is not at a pair.
+     */
+    public void setValue(V value) {
+      this.checkPosition();
+      AssociativeArray.this.setValueAt(this.pos, value);
+    } // setValue(V)
+
+    /**
+     * Make sure that the cursor is at a pair, and that no pairs were
+     * added or removed behind its back.
+     */
+    private void checkPosition() {
+      this.checkForComodification();
+      if (this.pos < 0 || this.pos >= AssociativeArray.this.used) {
+        throw new IllegalStateException("the cursor is not at a pair");
+      }
+    } // checkPosition()
+
+    /**
+     * Make sure that no pairs were added or removed behind the
+     * cursor's back.
+     */
+    private void checkForComodification() {
+      if (AssociativeArray.this.modCount != this.expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+    } // checkForComodification()
+  } // class Cursor
+
+  /**
+   * An iterator over the pairs of an associative array, which hands
+   * out each pair as a new, immutable Map.Entry.
+   */
+  class EntryIterator implements Iterator<Map.Entry<K, V>> {
+    /**
+     * The position at which to look for the next pair.
+     */
+    int next = 0;
+
+    /**
+     * The position of the pair that next last returned, or -1 if
+     * there is none (or it was removed).
+     */
+    int last = -1;
+
+    /**
+     * The value of modCount that the iterator expects.
+     */
+    int expectedModCount = AssociativeArray.this.modCount;
+
+    public boolean hasNext() {
+      while (this.next < AssociativeArray.this.used
+          && AssociativeArray.this.keys[this.next] == REMOVED) {
+        this.next++;
+      }
+      return this.next < AssociativeArray.this.used;
+    } // hasNext()
+
+    @SuppressWarnings({ "unchecked" })
+    public Map.Entry<K, V> next() {
+      if (AssociativeArray.this.modCount != this.expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      if (!this.hasNext()) {
+        throw new NoSuchElementException();
+      }
+      this.last = this.next++;
+      return new AbstractMap.SimpleImmutableEntry<K, V>(
+        (K) AssociativeArray.this.keys[this.last],
+        (V) AssociativeArray.this.values[this.last]);
+    } // next()
+
+    @SuppressWarnings({ "unchecked" })
+    public void remove() {
+      if (this.last < 0) {
+        throw new IllegalStateException();
+      }
+      if (AssociativeArray.this.modCount != this.expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      AssociativeArray.this.delete((K) AssociativeArray.this.keys[this.last]);
+      if (!AssociativeArray.this.preserveOrder) {
+        // the last pair moved into the hole, so visit that position again
+        this.next = this.last;
+      }
+      this.last = -1;
+      this.expectedModCount = AssociativeArray.this.modCount;
+    } // remove()
+  } // class EntryIterator
+
+  /**
+   * A spliterator over positions origin to fence-1 of the arrays of
+   * pairs, skipping holes. Each element is whatever element makes of a
+   * position: the key, the value, or an entry.
+   *
+   * With no holes, the spliterator and all of its parts know exactly
+   * how many pairs they hold. With holes, only the whole knows that
+   * (it is the size of the array); the parts of a split can only
+   * guess.
+   */
+  class PairSpliterator<T> implements Spliterator<T> {
+    /**
+     * The position of the next element.
+     */
+    int origin;
+
+    /**
+     * One past the position of the last element.
+     */
+    final int fence;
+
+    /**
+     * How to turn a position into an element.
+     */
+    final IntFunction<T> element;
+
+    /**
+     * The characteristics of the elements (beyond being ordered and
+     * sized): DISTINCT for keys and entries, and nothing for values.
+     */
+    final int characteristics;
+
+    /**
+     * The value of modCount that the spliterator expects.
+     */
+    final int expectedModCount;
+
+    /**
+     * How many pairs remain: exact when sizing includes SIZED, and a
+     * guess otherwise.
+     */
+    long estimate;
+
+    /**
+     * SIZED | SUBSIZED when there are no holes, SIZED for the whole of
+     * an array with holes, and nothing for its parts.
+     */
+    int sizing;
+
+    /**
+     * Create a spliterator over positions origin to fence-1, which
+     * hold about estimate pairs.
+     */
+    PairSpliterator(int origin, int fence, IntFunction<T> element,
+        int characteristics, int expectedModCount, long estimate,
+        int sizing) {
+      this.origin = origin;
+      this.fence = fence;
+      this.element = element;
+      this.characteristics = characteristics;
+      this.expectedModCount = expectedModCount;
+      this.estimate = estimate;
+      this.sizing = sizing;
+    } // PairSpliterator(int, int, IntFunction, int, int, long, int)
+
+    public boolean tryAdvance(Consumer<? super T> action) {
+      Object[] keys = AssociativeArray.this.keys;
+      while (this.origin < this.fence && keys[this.origin] == REMOVED) {
+        this.origin++;
+      }
+      if (this.origin >= this.fence) {
+        return false;
+      }
+      action.accept(this.element.apply(this.origin++));
+      if (this.estimate > 0) {
+        this.estimate--;
+      }
+      this.checkForComodification();
+      return true;
+    } // tryAdvance(Consumer)
+
+    public void forEachRemaining(Consumer<? super T> action) {
+      Object[] keys = AssociativeArray.this.keys;
+      for (int i = this.origin; i < this.fence; i++) {
+        if (keys[i] != REMOVED) {
+          action.accept(this.element.apply(i));
+        }
+      }
+      this.origin = this.fence;
+      this.estimate = 0;
+      this.checkForComodification();
+    } // forEachRemaining(Consumer)
+
+    public Spliterator<T> trySplit() {
+      int mid = (this.origin + this.fence) >>> 1;
+      if (mid <= this.origin) {
+        return null;
+      }
+      // hand off the first half, and keep the second; with holes, we
+      // no longer know how many pairs each half holds
+      boolean exact = (this.sizing & Spliterator.SUBSIZED) != 0;
+      long prefixEstimate = exact ? mid - this.origin : this.estimate >>> 1;
+      this.sizing = exact ? this.sizing : 0;
+      Spliterator<T> prefix = new PairSpliterator<T>(this.origin, mid,
+        this.element, this.characteristics, this.expectedModCount,
+        prefixEstimate, this.sizing);
+      this.origin = mid;
+      this.estimate -= prefixEstimate;
+      return prefix;
+    } // trySplit()
+
+    public long estimateSize() {
+      return this.estimate;
+    } // estimateSize()
+
+    public int characteristics() {
+      return this.characteristics | Spliterator.ORDERED | this.sizing;
+    } // characteristics()
+
+    /**
+     * Make sure that no pairs were added or removed behind the
+     * spliterator's back.
+     */
+    private void checkForComodification() {
+      if (AssociativeArray.this.modCount != this.expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+    } // checkForComodification()
+  } // class PairSpliterator
+
   // +-----------+---------------------------------------------------
   // | Constants |
   // +-----------+
@@ -20,6 +415,49 @@ public class AssociativeArray<K, V> {
    */
   static final int DEFAULT_CAPACITY = 16;
 
+  /**
+   * The default load factor: the largest fraction of the hash index
+   * that may be in use.
+   */
+  static final float DEFAULT_LOAD_FACTOR = 0.5f;
+
+  /**
+   * The default growth factor: how much the array of pairs grows by
+   * whenever it fills up.
+   */
+  static final float DEFAULT_GROWTH_FACTOR = 2.0f;
+
+  /**
+   * The largest array we are willing to allocate.
+   */
+  static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+  /**
+   * Whether new arrays throw the shared, stackless KeyNotFoundException
+   * by default. Set the system property
+   * structures.AssociativeArray.lightweightExceptions to true to turn
+   * this on for the whole program.
+   */
+  static final boolean DEFAULT_LIGHTWEIGHT_EXCEPTIONS = 
+    Boolean.getBoolean("structures.AssociativeArray.lightweightExceptions");
+
+  /**
+   * The default parallelism threshold of the bulk operations: arrays
+   * with fewer pairs than this are processed in the calling thread.
+   */
+  static final long DEFAULT_PARALLELISM_THRESHOLD = 1 << 13;
+
+  /**
+   * The marker for an unused slot in the hash index.
+   */
+  static final int EMPTY = -1;
+
+  /**
+   * The key we store at a position whose pair was removed. (We cannot
+   * use null, since null is a perfectly good key.)
+   */
+  static final Object REMOVED = new Object();
+
   // +--------+------------------------------------------------------
   // | Fields |
   // +--------+
@@ -30,9 +468,74 @@ public class AssociativeArray<K, V> {
   int size;
 
   /**
-   * The array of key/value pairs.
+   * The number of positions in use, counting the holes that removed
+   * pairs leave behind.
+   */
+  int used;
+
+  /**
+   * The keys. Positions before `used` hold either a key or, where a
+   * pair was removed, REMOVED. We store the pairs as parallel arrays
+   * of keys, values, and hashes rather than as KVPair objects, which
+   * saves an object per pair and keeps probes within a few arrays.
+   */
+  Object[] keys;
+
+  /**
+   * The values, at the same positions as their keys.
+   */
+  Object[] values;
+
+  /**
+   * The hashes of the keys, at the same positions as the keys.
+   */
+  int[] hashes;
+
+  /**
+   * The hash index. Each slot holds either EMPTY or the position of
+   * a pair whose key hashes (after probing) to that slot. Its length
+   * is always a power of two and big enough that filling the arrays of
+   * pairs never uses more than `loadFactor` of it.
+   */
+  HashIndex index;
+
+  /**
+   * How the index probes for keys.
+   */
+  final Probing probing;
+
+  /**
+   * The largest fraction of the index that may be in use.
+   */
+  final float loadFactor;
+
+  /**
+   * How much the array of pairs grows by when it fills up.
+   */
+  final float growthFactor;
+
+  /**
+   * Whether get and find throw KeyNotFoundException.SHARED (which has
+   * no stack trace) rather than a new exception.
+   */
+  boolean lightweightExceptions = DEFAULT_LIGHTWEIGHT_EXCEPTIONS;
+
+  /**
+   * Whether remove keeps the remaining pairs in insertion order.
+   */
+  boolean preserveOrder = true;
+
+  /**
+   * Whether the arrays and the index may be shared with a lazy clone,
+   * in which case we must copy them before changing them.
    */
-  KVPair<K, V> pairs[];
+  boolean shared;
+
+  /**
+   * The number of times pairs were added, removed, or moved, so that
+   * iterators can tell when the array changed under them.
+   */
+  int modCount;
 
   // +--------------+------------------------------------------------
   // | Constructors |
@@ -41,90 +544,209 @@ public class AssociativeArray<K, V> {
   /**
    * Create a new, empty associative array.
    */
-  @SuppressWarnings({ "unchecked" })
   public AssociativeArray() {
-    // Creating new arrays is sometimes a PITN.
-    // Making an empty array of pairs with default capacity.
-    this.pairs = (KVPair<K, V>[]) newInstance((new KVPair<K, V>()).getClass(),
-      DEFAULT_CAPACITY); 
+    this(DEFAULT_CAPACITY);
+  } // AssociativeArray()
+
+  /**
+   * Create a new, empty associative array that can hold expectedSize
+   * key/value pairs without expanding.
+   *
+   * @throws IllegalArgumentException
+   *   when expectedSize is negative.
+   */
+  public AssociativeArray(int expectedSize) {
+    this(expectedSize, DEFAULT_LOAD_FACTOR, DEFAULT_GROWTH_FACTOR);
+  } // AssociativeArray(int)
+
+  /**
+   * Create a new, empty associative array that can hold expectedSize
+   * key/value pairs without expanding, keeps at most loadFactor of its
+   * hash index in use, and grows by growthFactor whenever it fills up.
+   *
+   * @throws IllegalArgumentException
+   *   when expectedSize is negative, loadFactor is not strictly between
+   *   0 and 1, or growthFactor is not greater than 1.
+   */
+  public AssociativeArray(int expectedSize, float loadFactor,
+      float growthFactor) {
+    this(expectedSize, loadFactor, growthFactor, Probing.LINEAR);
+  } // AssociativeArray(int, float, float)
+
+  /**
+   * Create a new, empty associative array that can hold expectedSize
+   * key/value pairs without expanding, keeps at most loadFactor of its
+   * hash index in use, grows by growthFactor whenever it fills up, and
+   * probes its index as probing says.
+   *
+   * @throws IllegalArgumentException
+   *   when expectedSize is negative, loadFactor is not strictly between
+   *   0 and 1, or growthFactor is not greater than 1.
+   */
+  public AssociativeArray(int expectedSize, float loadFactor,
+      float growthFactor, Probing probing) {
+    if (expectedSize < 0 || expectedSize > MAX_CAPACITY) {
+      throw new IllegalArgumentException("invalid size: " + expectedSize);
+    }
+    if (!(loadFactor > 0 && loadFactor < 1)) {
+      throw new IllegalArgumentException("invalid load factor: " + loadFactor);
+    }
+    if (!(growthFactor > 1)) {
+      throw new IllegalArgumentException("invalid growth factor: "
+        + growthFactor);
+    }
+    this.loadFactor = loadFactor;
+    this.growthFactor = growthFactor;
+    this.probing = probing;
+    // Making empty arrays of keys, values, and hashes with the expected
+    // capacity.
+    this.keys = new Object[expectedSize];
+    this.values = new Object[expectedSize];
+    this.hashes = new int[expectedSize];
     // Making another variable with size which is declared as 0.
     this.size = 0;
-  } // AssociativeArray()
+    this.used = 0;
+    // Making an empty hash index that is big enough for all of the pairs.
+    this.index = probing.newIndex(this.indexLength(expectedSize), expectedSize);
+  } // AssociativeArray(int, float, float, Probing)
 
   // +------------------+--------------------------------------------
   // | Standard Methods |
   // +------------------+
 
   /**
-   * Create a copy of this AssociativeArray.
+   * Create a copy of this AssociativeArray. The copy shares its keys
+   * and values with the original, but not its arrays, so changing one
+   * does not affect the other. Since we copy the arrays and the index
+   * as they are, rather than adding the pairs one at a time, this
+   * takes O(n) time.
    */
   public AssociativeArray<K, V> clone() {
-    AssociativeArray<K, V> temp = new AssociativeArray<K, V>();
-    for(int i = 0; i < this.size; i++){
-      temp.set(this.pairs[i].key, this.pairs[i].value);
-    }
+    AssociativeArray<K, V> temp = this.emptyCopy(0);
+    temp.keys = Arrays.copyOf(this.keys, this.keys.length);
+    temp.values = Arrays.copyOf(this.values, this.values.length);
+    temp.hashes = Arrays.copyOf(this.hashes, this.hashes.length);
+    temp.index = this.index.copy();
+    temp.used = this.used;
+    temp.size = this.size;
     // returning a cloned AssociativeArray
     return temp; 
   } // clone()
 
+  /**
+   * Create a copy of this AssociativeArray that shares its arrays with
+   * the original until one of them changes. This takes O(1) time, and
+   * each of the two copies the arrays (in O(n) time) only the first
+   * time that it adds, removes, or replaces a pair, which suits copies
+   * that are mostly read.
+   */
+  public AssociativeArray<K, V> lazyClone() {
+    AssociativeArray<K, V> temp = this.emptyCopy(0);
+    temp.keys = this.keys;
+    temp.values = this.values;
+    temp.hashes = this.hashes;
+    temp.index = this.index;
+    temp.used = this.used;
+    temp.size = this.size;
+    temp.shared = true;
+    this.shared = true;
+    return temp;
+  } // lazyClone()
+
   /**
    * Convert the array to a string.
    */
   public String toString() {
-    // Initializing the returning variable with "{ " as the start of
-    // an array is visualized as "{ "
-    String ret = "{ ";
-    // for each of the variable, add the variable converted to string
-    for(int i = 0; i < this.size; i++){
-      // treat null as an exception, and add the key to the returning string
-      ret += (this.pairs[i].key==null)? "null" : this.pairs[i].key;
-      // separate the key and value with a column
-      ret += ": ";
-      // treat null as an exception, and add value of the key
-      ret += (this.pairs[i].value==null)? "null" : this.pairs[i].value;
-      // separate each element of the associative array with ","
-      // treat the last element as an exception, and add a space only in that case.
-      ret += (i != this.size-1)? ", " : " ";
-    }
-    // return ret with closing curly bracket.
-    return ret + "}";
+    // guess at the length, so that the builder rarely needs to grow
+    StringBuilder ret =
+      new StringBuilder((int) Math.min(4 + 16L * this.size, 1 << 16));
+    try {
+      this.writeTo(ret);
+    } catch (IOException e) {
+      // StringBuilder never throws
+      throw new UncheckedIOException(e);
+    }
+    return ret.toString();
   } // toString()
 
   // +----------------+----------------------------------------------
   // | Public Methods |
   // +----------------+
 
+  /**
+   * Write the array to out, in the same form as toString, one piece at
+   * a time. Unlike toString, this never holds the whole text in memory,
+   * so it suits dumping a large array to a file or socket.
+   *
+   * @throws IOException
+   *   when out does.
+   */
+  public void writeTo(Appendable out) throws IOException {
+    // Start with "{ ", as the start of an array is visualized as "{ "
+    out.append("{ ");
+    // count the pairs we have visited, since the array may have holes
+    int seen = 0;
+    for (int i = 0; i < this.used; i++) {
+      // skip the holes left by removed pairs
+      if (this.keys[i] == REMOVED) {
+        continue;
+      }
+      seen++;
+      // separate the key and value with a colon (String.valueOf turns
+      // null into "null")
+      out.append(String.valueOf(this.keys[i])).append(": ");
+      out.append(String.valueOf(this.values[i]));
+      // separate the pairs with ", ", but follow the last with " "
+      out.append((seen != this.size) ? ", " : " ");
+    }
+    // close with a curly bracket.
+    out.append("}");
+  } // writeTo(Appendable)
+
   /**
    * Set the value associated with key to value. Future calls to
    * get(key) will return value.
    */
   public void set(K key, V value) {
-    try {
-      // attempt to find a key, and save the index of the key as ind
-      int ind = find(key);
-      // if successful, set the key with the intended value.
-      this.pairs[ind] = null;
-      this.pairs[ind] = new KVPair<K, V>(key, value);
-    } catch (Exception e) {
-      // when key is not found,
-      // check whether the array is full
-      if(this.isFull()){
-        // if it is full, expand the array
-        this.expand();
-        // then add the elements that has to be set as a new pair.
-        this.pairs[this.size] = new KVPair<K, V>(key, value);
-        // when done adding, increment the size.
-        this.size++;
-        return;
-      }
-      // when it is not full, simply set the last element of the 
-      // array with the key and value that is to be set
-      this.pairs[this.size] = new KVPair<K, V>(key, value);
-      // then increment the size
-      this.size++;
-    }
+    this.put(key, value, hash(key));
   } // set(K,V)
 
+  /**
+   * Set the value associated with each key in other to its value in
+   * other. This makes room for all of the pairs at once, and reuses
+   * the hashes that other has already computed.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public void setAll(AssociativeArray<? extends K, ? extends V> other) {
+    if (other == this) {
+      return;
+    }
+    this.makeRoom(other.size);
+    for (int i = 0; i < other.used; i++) {
+      if (other.keys[i] != REMOVED) {
+        this.put((K) other.keys[i], (V) other.values[i], other.hashes[i]);
+      }
+    }
+  } // setAll(AssociativeArray)
+
+  /**
+   * Set the value associated with keys[i] to values[i], for each i.
+   * When a key appears more than once, its last value wins.
+   *
+   * @throws IllegalArgumentException
+   *   when keys and values differ in length.
+   */
+  public void setAll(K[] keys, V[] values) {
+    if (keys.length != values.length) {
+      throw new IllegalArgumentException("got " + keys.length + " keys but "
+        + values.length + " values");
+    }
+    this.makeRoom(keys.length);
+    for (int i = 0; i < keys.length; i++) {
+      this.put(keys[i], values[i], hash(keys[i]));
+    }
+  } // setAll(K[], V[])
+
   /**
    * Get the value associated with key.
    *
@@ -132,65 +754,107 @@ public class AssociativeArray<K, V> {
    *                              when the key does not appear in the associative
    *                              array.
    */
+  @SuppressWarnings({ "unchecked" })
   public V get(K key) throws KeyNotFoundException {
-    if(!hasKey(key)){
-      throw new KeyNotFoundException();
+    // a single probe tells us both whether the key is there and where
+    int ind = indexOf(key);
+    if (ind < 0) {
+      throw this.notFound();
     }
-    for(int i = 0; i<this.size; i++){
-      if(this.pairs[i].key != null){
-        if(this.pairs[i].key.equals(key)){
-          return this.pairs[i].value;
-        }
-      }else{
-        if(this.pairs[i].key == key){
-          return this.pairs[i].value;
-        }
+    return (V) this.values[ind];
+  } // get(K)
+
+  /**
+   * Get the value associated with key, or defaultValue when the key
+   * does not appear in the associative array.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public V getOrDefault(K key, V defaultValue) {
+    int ind = indexOf(key);
+    return (ind >= 0) ? (V) this.values[ind] : defaultValue;
+  } // getOrDefault(K, V)
+
+  /**
+   * Get the value associated with key, if there is one. Since
+   * Optional cannot hold null, a key whose value is null also
+   * yields an empty Optional; use hasKey to tell the two apart.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public Optional<V> tryGet(K key) {
+    int ind = indexOf(key);
+    return (ind >= 0) ? Optional.ofNullable((V) this.values[ind])
+                      : Optional.empty();
+  } // tryGet(K)
+
+  /**
+   * Look up each of keys, storing the value associated with keys[i]
+   * in out[i], or null when keys[i] does not appear in the associative
+   * array. Returns the number of keys that appear.
+   *
+   * @throws IllegalArgumentException
+   *   when out is shorter than keys.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public int getAll(K[] keys, V[] out) {
+    if (out.length < keys.length) {
+      throw new IllegalArgumentException("no room for " + keys.length
+        + " values in " + out.length);
+    }
+    int found = 0;
+    for (int i = 0; i < keys.length; i++) {
+      int ind = indexOf(keys[i]);
+      if (ind >= 0) {
+        out[i] = (V) this.values[ind];
+        found++;
+      } else {
+        out[i] = null;
       }
     }
-    return null;
-  } // get(K)
+    return found;
+  } // getAll(K[], V[])
 
   /**
    * Determine if key appears in the associative array.
    */
   public boolean hasKey(K key) {
-    try {
-      // attempt to find the key
-      find(key);
-      // when it is found, return true
-      return true;
-    } catch (Exception e) {
-      // if the key is not found, return false.
-      return false;
-    }
+    return indexOf(key) >= 0;
   } // hasKey(K)
 
   /**
    * Remove the key/value pair associated with a key. Future calls
    * to get(key) will throw an exception. If the key does not appear
    * in the associative array, does nothing.
+   *
+   * When the array preserves order, this leaves a hole where the pair
+   * was; otherwise, the last pair moves into its place. Either way,
+   * no other pairs move (except when the holes are squeezed out, which
+   * happens rarely enough to cost O(1) per removal on average).
    */
   public void remove(K key) {
-    try{
-      // attempt to find the key, and save as a variable ind
-      int ind = find(key);
-      // when found, remove the pair at that index
-      this.pairs[ind] = null;
-      // then iterate through the array to shift the elements left.
-      for(int i = ind+1; i<this.size; i++){
-        // shifting the rest of the array left.
-        this.pairs[i-1] = this.pairs[i]; 
-        // deleting the moved element.
-        this.pairs[i] = null;
-      }
-      // decrement the size.
-      this.size--;
-    }catch(Exception e){
-      // when nothing is found, finish the function without modifying anything.
-      return;
+    if (this.delete(key) && this.holesNeedCompacting()) {
+      // squeeze out the holes once they take up half of the array
+      this.compact();
     }
   } // remove(K)
 
+  /**
+   * Remove the pair associated with each of keys, as remove does, and
+   * return the number of pairs removed. Holes left behind are squeezed
+   * out (at most) once, at the end.
+   */
+  public int removeAll(Iterable<? extends K> keys) {
+    int removed = 0;
+    for (K key : keys) {
+      if (this.delete(key)) {
+        removed++;
+      }
+    }
+    if (this.holesNeedCompacting()) {
+      this.compact();
+    }
+    return removed;
+  } // removeAll(Iterable)
+
   /**
    * Determine how many values are in the associative array.
    */
@@ -198,45 +862,622 @@ public class AssociativeArray<K, V> {
     return this.size;
   } // size()
 
+  /**
+   * Call action on each pair, in the order that toString shows them.
+   *
+   * @throws ConcurrentModificationException
+   *   when action adds or removes pairs.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public void forEach(BiConsumer<? super K, ? super V> action) {
+    int expectedModCount = this.modCount;
+    for (int i = 0; i < this.used && this.modCount == expectedModCount; i++) {
+      if (this.keys[i] != REMOVED) {
+        action.accept((K) this.keys[i], (V) this.values[i]);
+      }
+    }
+    if (this.modCount != expectedModCount) {
+      throw new ConcurrentModificationException();
+    }
+  } // forEach(BiConsumer)
+
+  /**
+   * Get an iterator over the pairs, in the order that toString shows
+   * them. Its remove method removes the last pair it returned.
+   */
+  public Iterator<Map.Entry<K, V>> iterator() {
+    return new EntryIterator();
+  } // iterator()
+
+  /**
+   * Get a cursor that stands before the first pair.
+   */
+  public Cursor cursor() {
+    return new Cursor();
+  } // cursor()
+
+  /**
+   * Get a spliterator over the pairs, in the order that toString
+   * shows them. It skips the holes that removed pairs left behind,
+   * and knows exactly how many pairs each part of a split holds only
+   * when there are none.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public Spliterator<Map.Entry<K, V>> spliterator() {
+    return this.pairSpliterator((i) ->
+      new AbstractMap.SimpleImmutableEntry<K, V>((K) this.keys[i],
+        (V) this.values[i]), Spliterator.DISTINCT);
+  } // spliterator()
+
+  /**
+   * Get a stream of the keys, in the order that toString shows them.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public Stream<K> keys() {
+    return StreamSupport.stream(
+      this.pairSpliterator((i) -> (K) this.keys[i], Spliterator.DISTINCT),
+      false);
+  } // keys()
+
+  /**
+   * Get a stream of the values, in the order that toString shows
+   * them.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public Stream<V> values() {
+    return StreamSupport.stream(
+      this.pairSpliterator((i) -> (V) this.values[i], 0), false);
+  } // values()
+
+  /**
+   * Get a stream of the pairs, as immutable entries, in the order that
+   * toString shows them.
+   */
+  public Stream<Map.Entry<K, V>> entries() {
+    return StreamSupport.stream(this.spliterator(), false);
+  } // entries()
+
+  /**
+   * Get a parallel stream of the pairs, as immutable entries.
+   */
+  public Stream<Map.Entry<K, V>> parallelStream() {
+    return this.entries().parallel();
+  } // parallelStream()
+
+  /**
+   * Replace the value of each pair with the result of calling function
+   * on its key and value. Runs in parallel when the array holds at
+   * least DEFAULT_PARALLELISM_THRESHOLD pairs.
+   *
+   * @throws ConcurrentModificationException
+   *   when function adds or removes pairs.
+   */
+  public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+    this.replaceAll(DEFAULT_PARALLELISM_THRESHOLD, function);
+  } // replaceAll(BiFunction)
+
+  /**
+   * Replace the value of each pair with the result of calling function
+   * on its key and value. Runs in parallel when the array holds at
+   * least parallelismThreshold pairs.
+   *
+   * @throws ConcurrentModificationException
+   *   when function adds or removes pairs.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public void replaceAll(long parallelismThreshold,
+      BiFunction<? super K, ? super V, ? extends V> function) {
+    this.unshare();
+    this.bulk(parallelismThreshold, (from, to) -> {
+      for (int i = from; i < to; i++) {
+        if (this.keys[i] != REMOVED) {
+          this.values[i] = function.apply((K) this.keys[i], (V) this.values[i]);
+        }
+      }
+      return null;
+    }, (left, right) -> null);
+  } // replaceAll(long, BiFunction)
+
+  /**
+   * Create a new associative array with the same keys, in the same
+   * order, whose values are the results of calling function on the
+   * values of this one. Runs in parallel when the array holds at least
+   * DEFAULT_PARALLELISM_THRESHOLD pairs.
+   */
+  public <U> AssociativeArray<K, U> mapValues(
+      Function<? super V, ? extends U> function) {
+    return this.mapValues(DEFAULT_PARALLELISM_THRESHOLD, function);
+  } // mapValues(Function)
+
+  /**
+   * Create a new associative array with the same keys, in the same
+   * order, whose values are the results of calling function on the
+   * values of this one. Runs in parallel when the array holds at least
+   * parallelismThreshold pairs.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public <U> AssociativeArray<K, U> mapValues(long parallelismThreshold,
+      Function<? super V, ? extends U> function) {
+    Object[] mapped = new Object[this.used];
+    this.bulk(parallelismThreshold, (from, to) -> {
+      for (int i = from; i < to; i++) {
+        if (this.keys[i] != REMOVED) {
+          mapped[i] = function.apply((V) this.values[i]);
+        }
+      }
+      return null;
+    }, (left, right) -> null);
+    // the keys and their hashes carry over, so no lookups are needed
+    AssociativeArray<K, U> result = this.emptyCopy(this.size);
+    for (int i = 0; i < this.used; i++) {
+      if (this.keys[i] != REMOVED) {
+        result.append(this.keys[i], mapped[i], this.hashes[i]);
+      }
+    }
+    return result;
+  } // mapValues(long, Function)
+
+  /**
+   * Create a new associative array with the pairs that predicate
+   * accepts, in the same order. Runs in parallel when the array holds
+   * at least DEFAULT_PARALLELISM_THRESHOLD pairs.
+   */
+  public AssociativeArray<K, V> filter(
+      BiPredicate<? super K, ? super V> predicate) {
+    return this.filter(DEFAULT_PARALLELISM_THRESHOLD, predicate);
+  } // filter(BiPredicate)
+
+  /**
+   * Create a new associative array with the pairs that predicate
+   * accepts, in the same order. Runs in parallel when the array holds
+   * at least parallelismThreshold pairs.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public AssociativeArray<K, V> filter(long parallelismThreshold,
+      BiPredicate<? super K, ? super V> predicate) {
+    boolean[] accepted = new boolean[this.used];
+    int count = this.bulk(parallelismThreshold, (from, to) -> {
+      int kept = 0;
+      for (int i = from; i < to; i++) {
+        if (this.keys[i] != REMOVED
+            && predicate.test((K) this.keys[i], (V) this.values[i])) {
+          accepted[i] = true;
+          kept++;
+        }
+      }
+      return kept;
+    }, Integer::sum);
+    AssociativeArray<K, V> result = this.emptyCopy(count);
+    for (int i = 0; i < this.used; i++) {
+      if (accepted[i]) {
+        result.append(this.keys[i], this.values[i], this.hashes[i]);
+      }
+    }
+    return result;
+  } // filter(long, BiPredicate)
+
+  /**
+   * Combine the results of calling transformer on each pair with
+   * reducer, skipping the pairs for which transformer returns null.
+   * Returns null if there are no results to combine. Runs in parallel
+   * when the array holds at least parallelismThreshold pairs, in which
+   * case reducer should be associative.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public <U> U reduce(long parallelismThreshold,
+      BiFunction<? super K, ? super V, ? extends U> transformer,
+      BiFunction<? super U, ? super U, ? extends U> reducer) {
+    BinaryOperator<U> combine = (left, right) -> (left == null) ? right
+      : (right == null) ? left : reducer.apply(left, right);
+    return this.bulk(parallelismThreshold, (from, to) -> {
+      U result = null;
+      for (int i = from; i < to; i++) {
+        if (this.keys[i] != REMOVED) {
+          result = combine.apply(result,
+            transformer.apply((K) this.keys[i], (V) this.values[i]));
+        }
+      }
+      return result;
+    }, combine);
+  } // reduce(long, BiFunction, BiFunction)
+
+  /**
+   * Make sure that the associative array can hold at least minCapacity
+   * key/value pairs without expanding again.
+   */
+  public void ensureCapacity(int minCapacity) {
+    if (minCapacity > this.keys.length) {
+      this.resize(Math.min(minCapacity, MAX_CAPACITY));
+    }
+  } // ensureCapacity(int)
+
+  /**
+   * Choose whether get and find report missing keys with a shared
+   * KeyNotFoundException that has no stack trace. That makes misses
+   * much cheaper, but the exception no longer says where it came from.
+   */
+  public void setLightweightExceptions(boolean lightweight) {
+    this.lightweightExceptions = lightweight;
+  } // setLightweightExceptions(boolean)
+
+  /**
+   * Choose whether remove keeps the remaining pairs in insertion order
+   * (the default). Giving up the order makes remove slightly cheaper
+   * and keeps the pairs packed together.
+   */
+  public void setPreserveOrder(boolean preserveOrder) {
+    if (!preserveOrder) {
+      // the unordered mode assumes that there are no holes
+      this.compact();
+    }
+    this.preserveOrder = preserveOrder;
+  } // setPreserveOrder(boolean)
+
+  /**
+   * Determine the largest number of index slots (or, with GROUP
+   * probing, groups of slots) that looking up a key in the associative
+   * array examines.
+   */
+  public int maxProbeLength() {
+    return this.index.maxProbeLength(this.hashes);
+  } // maxProbeLength()
+
+  /**
+   * Determine the average number of index slots (or, with GROUP
+   * probing, groups of slots) that looking up a key in the associative
+   * array examines (or 0 if the array is empty).
+   */
+  public double averageProbeLength() {
+    return (this.size == 0) ? 0
+      : this.index.totalProbeLength(this.hashes) / (double) this.size;
+  } // averageProbeLength()
+
   // +-----------------+---------------------------------------------
   // | Private Methods |
   // +-----------------+
 
+  /**
+   * Set the value associated with key, whose hash is h, to value.
+   */
+  private void put(K key, V value, int h) {
+    this.unshare();
+    // attempt to find a key, and save the index of the key as ind
+    int ind = indexOf(key, h);
+    if (ind >= 0) {
+      // if successful, set the key with the intended value.
+      this.values[ind] = value;
+      return;
+    }
+    // when key is not found,
+    // check whether the array is full, and if so, make room
+    if(this.isFull()){
+      // squeeze out the holes if there are enough of them, and
+      // expand the array otherwise
+      if (this.used - this.size >= this.used / 4 + 1) {
+        this.compact();
+      } else {
+        this.expand();
+      }
+    }
+    // then set the first unused element of the array with the key and
+    // value that is to be set
+    this.keys[this.used] = key;
+    this.values[this.used] = value;
+    this.hashes[this.used] = h;
+    // record the new pair in the hash index
+    this.index.insert(this.used, this.hashes);
+    // then increment the size
+    this.used++;
+    this.size++;
+    this.modCount++;
+  } // put(K, V, int)
+
+  /**
+   * Make sure that extra more pairs fit without expanding more than
+   * once, squeezing out the holes first if they are in the way.
+   */
+  private void makeRoom(int extra) {
+    if ((long) this.used + extra > this.keys.length) {
+      this.compact();
+      this.ensureCapacity((int) Math.min((long) this.size + extra,
+        MAX_CAPACITY));
+    }
+  } // makeRoom(int)
+
+  /**
+   * Remove the pair associated with key, without squeezing out holes,
+   * and determine whether there was such a pair.
+   */
+  private boolean delete(K key) {
+    // attempt to find the slot of the key in the index
+    int slot = slotOf(key, hash(key));
+    if (slot < 0) {
+      // when nothing is found, finish the function without modifying anything.
+      return false;
+    }
+    this.unshare();
+    // when found, remove the pair from the index and the arrays
+    int ind = this.index.positionAt(slot);
+    this.index.delete(slot, this.hashes);
+    this.keys[ind] = REMOVED;
+    this.values[ind] = null;
+    this.size--;
+    this.modCount++;
+    if (!this.preserveOrder) {
+      // move the last pair into the hole, and tell the index where it went
+      int last = this.used - 1;
+      if (ind != last) {
+        this.keys[ind] = this.keys[last];
+        this.values[ind] = this.values[last];
+        this.hashes[ind] = this.hashes[last];
+        this.index.relocate(this.hashes[ind], last, ind);
+      }
+      this.keys[last] = null;
+      this.values[last] = null;
+      this.used--;
+    }
+    return true;
+  } // delete(K)
+
+  /**
+   * Make a spliterator over all of the pairs whose elements element
+   * makes from their positions, with the given extra characteristics.
+   * This only reads the array, so it leaves any holes in place.
+   */
+  private <T> Spliterator<T> pairSpliterator(IntFunction<T> element,
+      int characteristics) {
+    int sizing = (this.used == this.size)
+                 ? Spliterator.SIZED | Spliterator.SUBSIZED
+                 : Spliterator.SIZED;
+    return new PairSpliterator<T>(0, this.used, element, characteristics,
+      this.modCount, this.size, sizing);
+  } // pairSpliterator(IntFunction, int)
+
+  /**
+   * Run leaf over the positions in use and return the combination of
+   * the results. When the array holds at least parallelismThreshold
+   * pairs, the positions are split into batches that run as fork/join
+   * tasks in the common pool.
+   *
+   * @throws ConcurrentModificationException
+   *   when pairs were added or removed in the meantime.
+   */
+  private <R> R bulk(long parallelismThreshold, RangeTask.Leaf<R> leaf,
+      BinaryOperator<R> combine) {
+    int expectedModCount = this.modCount;
+    R result;
+    int parallelism = ForkJoinPool.getCommonPoolParallelism();
+    if (this.size < parallelismThreshold || parallelism < 2) {
+      result = leaf.apply(0, this.used);
+    } else {
+      // a few batches per worker, so that early finishers can steal more
+      int batch = Math.max(1, this.used / (4 * parallelism));
+      result = ForkJoinPool.commonPool().invoke(
+        new RangeTask<R>(0, this.used, batch, leaf, combine));
+    }
+    if (this.modCount != expectedModCount) {
+      throw new ConcurrentModificationException();
+    }
+    return result;
+  } // bulk(long, RangeTask.Leaf, BinaryOperator)
+
+  /**
+   * Create an empty associative array with the same settings as this
+   * one, that can hold expectedSize pairs without expanding.
+   */
+  private <K2, V2> AssociativeArray<K2, V2> emptyCopy(int expectedSize) {
+    AssociativeArray<K2, V2> temp = new AssociativeArray<K2, V2>(expectedSize,
+      this.loadFactor, this.growthFactor, this.probing);
+    temp.lightweightExceptions = this.lightweightExceptions;
+    temp.preserveOrder = this.preserveOrder;
+    return temp;
+  } // emptyCopy(int)
+
+  /**
+   * Add a pair whose key is known not to appear yet, and for which
+   * there is room, without looking it up.
+   */
+  private void append(Object key, Object value, int h) {
+    this.keys[this.used] = key;
+    this.values[this.used] = value;
+    this.hashes[this.used] = h;
+    this.index.insert(this.used, this.hashes);
+    this.used++;
+    this.size++;
+    this.modCount++;
+  } // append(Object, Object, int)
+
+  /**
+   * If the arrays and the index may be shared with a lazy clone, give
+   * this array copies of its own.
+   */
+  private void unshare() {
+    if (this.shared) {
+      this.keys = this.keys.clone();
+      this.values = this.values.clone();
+      this.hashes = this.hashes.clone();
+      this.index = this.index.copy();
+      this.shared = false;
+    }
+  } // unshare()
+
+  /**
+   * Determine whether the holes take up more than half of the array.
+   */
+  private boolean holesNeedCompacting() {
+    return this.used - this.size > this.used / 2;
+  } // holesNeedCompacting()
+
   /**
    * Determines whether the AssociativeArray is full.
    * @return int
    */
   private boolean isFull(){
-    // return whether the array is full (length == size)
-    return (this.pairs.length == size());
+    // return whether the array is full (length == used)
+    return (this.keys.length == this.used);
   } // isFull()
 
   /**
    * Expand the underlying array.
    */
   private void expand() {
-    // redeclare pairs as a copied array of current pairs, but extended with DEFAULT_CAPACITY
-    // more elements.
-    this.pairs = java.util.Arrays.copyOf(this.pairs, 2*DEFAULT_CAPACITY);
+    // grow geometrically, so that n calls to set cost O(n) copying in total,
+    // but always by at least one element.
+    long grown = (long) (this.keys.length * (double) this.growthFactor);
+    if (this.keys.length >= MAX_CAPACITY) {
+      throw new OutOfMemoryError("associative array too large");
+    }
+    this.resize((int) Math.max(this.keys.length + 1,
+      Math.min(grown, MAX_CAPACITY)));
   } // expand()
 
   /**
-   * Find the index of the first entry in `pairs` that contains key.
-   * If no such entry is found, throws an exception.
+   * Reallocate the arrays of pairs with the given capacity, growing the
+   * index along with it when needed.
+   */
+  private void resize(int capacity) {
+    this.unshare();
+    // redeclare the arrays as copies of the current ones, but with the new capacity.
+    this.keys = Arrays.copyOf(this.keys, capacity);
+    this.values = Arrays.copyOf(this.values, capacity);
+    this.hashes = Arrays.copyOf(this.hashes, capacity);
+    // keep the index big enough (and its slots wide enough) for a full
+    // array of pairs.
+    int length = this.indexLength(capacity);
+    if (this.index.length() < length || !this.index.fits(capacity)) {
+      this.index = this.probing.newIndex(Math.max(length, this.index.length()),
+        capacity);
+      this.reindex();
+    }
+  } // resize(int)
+
+  /**
+   * Determine how long the index must be to hold capacity pairs
+   * without exceeding the load factor.
+   */
+  private int indexLength(int capacity) {
+    long needed = (long) Math.ceil(capacity / (double) this.loadFactor);
+    // the index always has at least one empty slot, so probing terminates.
+    needed = Math.max(needed, capacity + 1L);
+    if (needed > (1 << 30)) {
+      throw new OutOfMemoryError("associative array too large");
+    }
+    return Math.max(2, Integer.highestOneBit((int) needed - 1) << 1);
+  } // indexLength(int)
+
+  /**
+   * Find the position of the pair that contains key. If no such pair
+   * is found, throws an exception.
    */
   public int find(K key) throws KeyNotFoundException {
-    for(int i = 0; i < this.size; i++){
-      if(this.pairs[i].key != null){
-        if(this.pairs[i].key.equals(key)){
-          return i;
-        }
-      }else{
-        if(this.pairs[i].key == key){
-          return i;
-        }
-      }
+    int ind = indexOf(key);
+    if (ind < 0) {
+      throw this.notFound();
     }
-    throw new KeyNotFoundException();
+    return ind;
   } // find(K)
 
+  /**
+   * Find the position of the pair that contains key, or -1 if there is
+   * no such pair. Unlike find, a miss allocates nothing.
+   */
+  int indexOf(K key) {
+    return indexOf(key, hash(key));
+  } // indexOf(K)
+
+  /**
+   * Set the value at position ind, which must hold a pair, to value.
+   * Like every other write, this first makes sure that the arrays are
+   * not shared with a lazy clone.
+   */
+  void setValueAt(int ind, V value) {
+    this.unshare();
+    this.values[ind] = value;
+  } // setValueAt(int, V)
+
+  /**
+   * Find the position of the pair that contains key, whose hash is h,
+   * or -1 if there is no such pair.
+   */
+  private int indexOf(K key, int h) {
+    int slot = slotOf(key, h);
+    return (slot < 0) ? -1 : this.index.positionAt(slot);
+  } // indexOf(K, int)
+
+  /**
+   * Find the slot of the index that refers to key, whose hash is h, or
+   * -1 if there is no such slot.
+   */
+  private int slotOf(K key, int h) {
+    return this.index.find(key, h, this.keys, this.hashes);
+  } // slotOf(K, int)
+
+  /**
+   * Get the exception to throw for a missing key.
+   */
+  private KeyNotFoundException notFound() {
+    return this.lightweightExceptions ? KeyNotFoundException.SHARED
+                                      : new KeyNotFoundException();
+  } // notFound()
+
+  /**
+   * Squeeze out the holes that removed pairs left behind, keeping the
+   * remaining pairs in order, and rebuild the index to match.
+   */
+  private void compact() {
+    if (this.used == this.size) {
+      return;
+    }
+    this.unshare();
+    int to = 0;
+    for (int from = 0; from < this.used; from++) {
+      if (this.keys[from] != REMOVED) {
+        this.keys[to] = this.keys[from];
+        this.values[to] = this.values[from];
+        this.hashes[to] = this.hashes[from];
+        to++;
+      }
+    }
+    Arrays.fill(this.keys, to, this.used, null);
+    Arrays.fill(this.values, to, this.used, null);
+    this.used = to;
+    this.modCount++;
+    this.reindex();
+  } // compact()
+
+  /**
+   * Rebuild the index from the first `used` positions.
+   */
+  private void reindex() {
+    this.index.clear();
+    for (int i = 0; i < this.used; i++) {
+      if (this.keys[i] != REMOVED) {
+        this.index.insert(i, this.hashes);
+      }
+    }
+  } // reindex()
+
+  /**
+   * Compute the hash of a key. The null key hashes to 0. We scramble
+   * hashCode, since keys such as strings that differ only in their
+   * last characters have nearby hash codes, which would otherwise land
+   * in long runs of neighboring slots. Then we fold the high bits into
+   * the low ones, since only the low bits pick a slot.
+   */
+  static int hash(Object key) {
+    if (key == null) {
+      return 0;
+    }
+    int h = key.hashCode() * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  } // hash(Object)
+
+  /**
+   * Determine whether two keys are equal, treating null as equal only
+   * to null.
+   */
+  static boolean keyEquals(Object a, Object b) {
+    return (a == null) ? (b == null) : a.equals(b);
+  } // keyEquals(Object, Object)
+
 } // class AssociativeArray
\ No newline at end of file
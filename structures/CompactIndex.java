@@ -0,0 +1,127 @@
+package structures;
+
+import java.util.Arrays;
+
+/**
+ * The slots of a hash index, each of which holds either EMPTY (-1) or
+ * the position of a pair. Since a position is always less than the
+ * capacity of the arrays of pairs, small tables can make do with
+ * narrow slots: one byte each for up to 127 pairs, two bytes each for
+ * up to 32767 pairs, and four bytes each beyond that. (This is the
+ * same trick that Python's dictionaries use.)
+ *
+ * @author Seunghyeon (Hyeon) Kim
+ */
+final class CompactIndex {
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of slots (a power of two).
+   */
+  final int length;
+
+  /**
+   * The slots, when each takes one byte (or null).
+   */
+  final byte[] bytes;
+
+  /**
+   * The slots, when each takes two bytes (or null).
+   */
+  final short[] shorts;
+
+  /**
+   * The slots, when each takes four bytes (or null).
+   */
+  final int[] ints;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create an index with length empty slots, each wide enough to hold
+   * positions less than capacity.
+   */
+  CompactIndex(int length, int capacity) {
+    this.length = length;
+    if (capacity <= Byte.MAX_VALUE) {
+      this.bytes = new byte[length];
+      this.shorts = null;
+      this.ints = null;
+    } else if (capacity <= Short.MAX_VALUE) {
+      this.bytes = null;
+      this.shorts = new short[length];
+      this.ints = null;
+    } else {
+      this.bytes = null;
+      this.shorts = null;
+      this.ints = new int[length];
+    } // if/else
+    this.clear();
+  } // CompactIndex(int, int)
+
+  /**
+   * Create a copy of other.
+   */
+  CompactIndex(CompactIndex other) {
+    this.length = other.length;
+    this.bytes = (other.bytes == null) ? null : other.bytes.clone();
+    this.shorts = (other.shorts == null) ? null : other.shorts.clone();
+    this.ints = (other.ints == null) ? null : other.ints.clone();
+  } // CompactIndex(CompactIndex)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the contents of a slot.
+   */
+  int get(int slot) {
+    if (this.bytes != null) {
+      return this.bytes[slot];
+    } else if (this.shorts != null) {
+      return this.shorts[slot];
+    } else {
+      return this.ints[slot];
+    } // if/else
+  } // get(int)
+
+  /**
+   * Set the contents of a slot.
+   */
+  void set(int slot, int pos) {
+    if (this.bytes != null) {
+      this.bytes[slot] = (byte) pos;
+    } else if (this.shorts != null) {
+      this.shorts[slot] = (short) pos;
+    } else {
+      this.ints[slot] = pos;
+    } // if/else
+  } // set(int, int)
+
+  /**
+   * Empty every slot.
+   */
+  void clear() {
+    if (this.bytes != null) {
+      Arrays.fill(this.bytes, (byte) AssociativeArray.EMPTY);
+    } else if (this.shorts != null) {
+      Arrays.fill(this.shorts, (short) AssociativeArray.EMPTY);
+    } else {
+      Arrays.fill(this.ints, AssociativeArray.EMPTY);
+    } // if/else
+  } // clear()
+
+  /**
+   * Determine whether the slots can hold positions less than capacity.
+   */
+  boolean fits(int capacity) {
+    return (this.ints != null)
+      || (this.shorts != null && capacity <= Short.MAX_VALUE)
+      || capacity <= Byte.MAX_VALUE;
+  } // fits(int)
+} // class CompactIndex
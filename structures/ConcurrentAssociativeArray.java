@@ -0,0 +1,364 @@
+package structures;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+
+/**
+ * An associative array that many threads may use at once. The pairs
+ * are split among a number of segments by the hash of their keys, and
+ * each segment is an ordinary AssociativeArray with its own lock.
+ * Writers on different segments never wait for each other, and a
+ * segment that has to grow only blocks the threads that need that
+ * same segment.
+ *
+ * Reads take no lock at all. They look a key up optimistically, then
+ * check the stamp of the segment's StampedLock to make sure that no
+ * writer got in the way, so readers of the same segment never block
+ * each other or write to shared memory. Only when a write did overlap
+ * does a read retry under the read lock.
+ *
+ * Single-key operations are atomic. Operations that look at the whole
+ * array (size, clone, and toString) visit the segments one at a time,
+ * so they may miss changes made while they run.
+ *
+ * @author Seunghyeon (Hyeon) Kim
+ */
+public class ConcurrentAssociativeArray<K, V> {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * What a read returns for a missing key. (We cannot use null, since
+   * null is a perfectly good value.)
+   */
+  static final Object MISSING = new Object();
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The segments. Their number is a power of two.
+   */
+  final AssociativeArray<K, V>[] segments;
+
+  /**
+   * The lock of each segment.
+   */
+  final StampedLock[] locks;
+
+  /**
+   * How far to shift a hash to get the number of its segment.
+   */
+  final int shift;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty associative array with enough segments for
+   * the processors of this machine.
+   */
+  public ConcurrentAssociativeArray() {
+    this(4 * Runtime.getRuntime().availableProcessors());
+  } // ConcurrentAssociativeArray()
+
+  /**
+   * Create a new, empty associative array with at least concurrency
+   * segments (rounded up to a power of two). About that many threads
+   * can then update the array without waiting for each other.
+   *
+   * @throws IllegalArgumentException
+   *   when concurrency is not positive.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public ConcurrentAssociativeArray(int concurrency) {
+    if (concurrency <= 0 || concurrency > (1 << 16)) {
+      throw new IllegalArgumentException("invalid concurrency: " + concurrency);
+    } // if
+    int count = (concurrency == 1) ? 1
+      : Integer.highestOneBit(concurrency - 1) << 1;
+    this.segments = (AssociativeArray<K, V>[]) new AssociativeArray<?, ?>[count];
+    this.locks = new StampedLock[count];
+    for (int i = 0; i < count; i++) {
+      this.segments[i] = new AssociativeArray<K, V>();
+      this.locks[i] = new StampedLock();
+    } // for
+    this.shift = 32 - Integer.numberOfTrailingZeros(count);
+  } // ConcurrentAssociativeArray(int)
+
+  // +------------------+--------------------------------------------
+  // | Standard Methods |
+  // +------------------+
+
+  /**
+   * Create a copy of this associative array.
+   */
+  public ConcurrentAssociativeArray<K, V> clone() {
+    ConcurrentAssociativeArray<K, V> temp =
+      new ConcurrentAssociativeArray<K, V>(this.segments.length);
+    for (int i = 0; i < this.segments.length; i++) {
+      long stamp = this.locks[i].readLock();
+      try {
+        temp.segments[i] = this.segments[i].clone();
+      } finally {
+        this.locks[i].unlockRead(stamp);
+      } // try/finally
+    } // for
+    return temp;
+  } // clone()
+
+  /**
+   * Convert the array to a string.
+   */
+  public String toString() {
+    StringBuilder ret = new StringBuilder("{ ");
+    for (int i = 0; i < this.segments.length; i++) {
+      String pairs;
+      long stamp = this.locks[i].readLock();
+      try {
+        pairs = (this.segments[i].size() > 0) ? this.segments[i].toString()
+                                              : null;
+      } finally {
+        this.locks[i].unlockRead(stamp);
+      } // try/finally
+      if (pairs != null) {
+        // drop the braces around the pairs of the segment
+        if (ret.length() > 2) {
+          ret.setLength(ret.length() - 1);
+          ret.append(", ");
+        } // if
+        ret.append(pairs, 2, pairs.length() - 1);
+      } // if
+    } // for
+    return ret.append("}").toString();
+  } // toString()
+
+  // +----------------+----------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  /**
+   * Set the value associated with key to value. Future calls to
+   * get(key) will return value.
+   */
+  public void set(K key, V value) {
+    int i = this.segmentOf(key);
+    long stamp = this.locks[i].writeLock();
+    try {
+      this.segments[i].set(key, value);
+    } finally {
+      this.locks[i].unlockWrite(stamp);
+    } // try/finally
+  } // set(K,V)
+
+  /**
+   * Get the value associated with key.
+   *
+   * @throws KeyNotFoundException
+   *   when the key does not appear in the associative array.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public V get(K key) throws KeyNotFoundException {
+    Object value = this.read(key);
+    if (value == MISSING) {
+      throw new KeyNotFoundException();
+    } // if
+    return (V) value;
+  } // get(K)
+
+  /**
+   * Get the value associated with key, or defaultValue when the key
+   * does not appear in the associative array.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public V getOrDefault(K key, V defaultValue) {
+    Object value = this.read(key);
+    return (value == MISSING) ? defaultValue : (V) value;
+  } // getOrDefault(K, V)
+
+  /**
+   * Determine if key appears in the associative array.
+   */
+  public boolean hasKey(K key) {
+    return this.read(key) != MISSING;
+  } // hasKey(K)
+
+  /**
+   * Remove the key/value pair associated with a key. Future calls
+   * to get(key) will throw an exception. If the key does not appear
+   * in the associative array, does nothing.
+   */
+  public void remove(K key) {
+    int i = this.segmentOf(key);
+    long stamp = this.locks[i].writeLock();
+    try {
+      this.segments[i].remove(key);
+    } finally {
+      this.locks[i].unlockWrite(stamp);
+    } // try/finally
+  } // remove(K)
+
+  /**
+   * Determine how many values are in the associative array.
+   */
+  public int size() {
+    int size = 0;
+    for (int i = 0; i < this.segments.length; i++) {
+      long stamp = this.locks[i].readLock();
+      try {
+        size += this.segments[i].size();
+      } finally {
+        this.locks[i].unlockRead(stamp);
+      } // try/finally
+    } // for
+    return size;
+  } // size()
+
+  /**
+   * Associate key with value, but only if key does not appear in the
+   * associative array yet.
+   *
+   * @return true if this call added the pair, false if key was
+   *   already there (in which case nothing changes).
+   */
+  public boolean putIfAbsent(K key, V value) {
+    int i = this.segmentOf(key);
+    AssociativeArray<K, V> segment = this.segments[i];
+    long stamp = this.locks[i].writeLock();
+    try {
+      if (segment.indexOf(key) >= 0) {
+        return false;
+      } // if
+      segment.set(key, value);
+      return true;
+    } finally {
+      this.locks[i].unlockWrite(stamp);
+    } // try/finally
+  } // putIfAbsent(K, V)
+
+  /**
+   * Associate key with value, but only if key already appears in the
+   * associative array.
+   *
+   * @return true if this call replaced a value, false if key was not
+   *   there (in which case nothing changes).
+   */
+  public boolean replace(K key, V value) {
+    int i = this.segmentOf(key);
+    AssociativeArray<K, V> segment = this.segments[i];
+    long stamp = this.locks[i].writeLock();
+    try {
+      int ind = segment.indexOf(key);
+      if (ind < 0) {
+        return false;
+      } // if
+      segment.setValueAt(ind, value);
+      return true;
+    } finally {
+      this.locks[i].unlockWrite(stamp);
+    } // try/finally
+  } // replace(K, V)
+
+  /**
+   * Associate key with value, but only if key is currently associated
+   * with expected (as determined by equals).
+   *
+   * @return true if this call replaced the value, false otherwise.
+   */
+  public boolean replace(K key, V expected, V value) {
+    int i = this.segmentOf(key);
+    AssociativeArray<K, V> segment = this.segments[i];
+    long stamp = this.locks[i].writeLock();
+    try {
+      int ind = segment.indexOf(key);
+      if (ind < 0 || !AssociativeArray.keyEquals(segment.values[ind], expected)) {
+        return false;
+      } // if
+      segment.setValueAt(ind, value);
+      return true;
+    } finally {
+      this.locks[i].unlockWrite(stamp);
+    } // try/finally
+  } // replace(K, V, V)
+
+  /**
+   * Get the value associated with key. If there is none, compute one
+   * with fun, associate key with it, and return it. No other thread
+   * can add key in the meantime, so fun runs at most once per key.
+   * Since fun runs while holding the lock of a segment, it should be
+   * quick and must not use this associative array. Finding a value
+   * that is already there takes no lock.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public V computeIfAbsent(K key, Function<? super K, ? extends V> fun) {
+    Object found = this.read(key);
+    if (found != MISSING) {
+      return (V) found;
+    } // if
+    int i = this.segmentOf(key);
+    AssociativeArray<K, V> segment = this.segments[i];
+    long stamp = this.locks[i].writeLock();
+    try {
+      int ind = segment.indexOf(key);
+      if (ind >= 0) {
+        return (V) segment.values[ind];
+      } // if
+      V value = fun.apply(key);
+      segment.set(key, value);
+      return value;
+    } finally {
+      this.locks[i].unlockWrite(stamp);
+    } // try/finally
+  } // computeIfAbsent(K, Function)
+
+  // +-----------------+---------------------------------------------
+  // | Private Methods |
+  // +-----------------+
+
+  /**
+   * Get the value associated with key, or MISSING. We first look
+   * without locking, and keep the answer if no writer held the lock
+   * meanwhile. A writer may have left the segment half changed, which
+   * can make the lookup fail in odd ways, so any exception also just
+   * sends us back to look again under the read lock.
+   */
+  @SuppressWarnings({ "unchecked" })
+  private Object read(K key) {
+    int i = this.segmentOf(key);
+    AssociativeArray<K, V> segment = this.segments[i];
+    StampedLock lock = this.locks[i];
+    long stamp = lock.tryOptimisticRead();
+    if (stamp != 0) {
+      try {
+        Object value = segment.getOrDefault(key, (V) MISSING);
+        if (lock.validate(stamp)) {
+          return value;
+        } // if
+      } catch (RuntimeException e) {
+        // a writer got in the way; look again below
+      } // try/catch
+    } // if
+    stamp = lock.readLock();
+    try {
+      return segment.getOrDefault(key, (V) MISSING);
+    } finally {
+      lock.unlockRead(stamp);
+    } // try/finally
+  } // read(K)
+
+  /**
+   * Find the number of the segment that key belongs to. We use the
+   * high bits of a scrambled hash, since the segment uses the low bits
+   * to pick a slot.
+   */
+  private int segmentOf(K key) {
+    if (this.shift == 32) {
+      return 0;
+    } // if
+    int h = AssociativeArray.hash(key) * 0x9E3779B9;
+    return h >>> this.shift;
+  } // segmentOf(K)
+} // class ConcurrentAssociativeArray
@@ -0,0 +1,153 @@
+package structures;
+
+import java.util.function.Consumer;
+
+/**
+ * An associative array for tables that are read far more often than
+ * they are written, and that many threads may use at once.
+ *
+ * Readers look up pairs in the current snapshot, an AssociativeArray
+ * that never changes once published, so reading costs one volatile
+ * load and takes no lock. Writers clone the snapshot, change the
+ * clone, and publish it in place of the snapshot. Writers wait for
+ * each other, but never for readers. Use update to make many changes
+ * with a single clone.
+ *
+ * @author Seunghyeon (Hyeon) Kim
+ */
+public class CopyOnWriteAssociativeArray<K, V> {
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The current snapshot. Nothing changes a snapshot once it has been
+   * stored here.
+   */
+  volatile AssociativeArray<K, V> snapshot;
+
+  /**
+   * The lock that writers hold while they build the next snapshot.
+   */
+  final Object writeLock = new Object();
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty associative array.
+   */
+  public CopyOnWriteAssociativeArray() {
+    this.snapshot = new AssociativeArray<K, V>();
+  } // CopyOnWriteAssociativeArray()
+
+  /**
+   * Create a new associative array that starts with a copy of the
+   * pairs in contents.
+   */
+  public CopyOnWriteAssociativeArray(AssociativeArray<K, V> contents) {
+    this.snapshot = contents.clone();
+  } // CopyOnWriteAssociativeArray(AssociativeArray)
+
+  // +------------------+--------------------------------------------
+  // | Standard Methods |
+  // +------------------+
+
+  /**
+   * Create a copy of this associative array. The copy can share the
+   * current snapshot, since nothing ever changes it.
+   */
+  public CopyOnWriteAssociativeArray<K, V> clone() {
+    CopyOnWriteAssociativeArray<K, V> temp =
+      new CopyOnWriteAssociativeArray<K, V>();
+    temp.snapshot = this.snapshot;
+    return temp;
+  } // clone()
+
+  /**
+   * Convert the array to a string.
+   */
+  public String toString() {
+    return this.snapshot.toString();
+  } // toString()
+
+  // +----------------+----------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  /**
+   * Set the value associated with key to value. Future calls to
+   * get(key) will return value.
+   */
+  public void set(K key, V value) {
+    synchronized (this.writeLock) {
+      AssociativeArray<K, V> next = this.snapshot.clone();
+      next.set(key, value);
+      this.snapshot = next;
+    } // synchronized
+  } // set(K,V)
+
+  /**
+   * Get the value associated with key.
+   *
+   * @throws KeyNotFoundException
+   *   when the key does not appear in the associative array.
+   */
+  public V get(K key) throws KeyNotFoundException {
+    return this.snapshot.get(key);
+  } // get(K)
+
+  /**
+   * Get the value associated with key, or defaultValue when the key
+   * does not appear in the associative array.
+   */
+  public V getOrDefault(K key, V defaultValue) {
+    return this.snapshot.getOrDefault(key, defaultValue);
+  } // getOrDefault(K, V)
+
+  /**
+   * Determine if key appears in the associative array.
+   */
+  public boolean hasKey(K key) {
+    return this.snapshot.hasKey(key);
+  } // hasKey(K)
+
+  /**
+   * Remove the key/value pair associated with a key. Future calls
+   * to get(key) will throw an exception. If the key does not appear
+   * in the associative array, does nothing (and copies nothing).
+   */
+  public void remove(K key) {
+    synchronized (this.writeLock) {
+      if (!this.snapshot.hasKey(key)) {
+        return;
+      } // if
+      AssociativeArray<K, V> next = this.snapshot.clone();
+      next.remove(key);
+      this.snapshot = next;
+    } // synchronized
+  } // remove(K)
+
+  /**
+   * Determine how many values are in the associative array.
+   */
+  public int size() {
+    return this.snapshot.size();
+  } // size()
+
+  /**
+   * Make a batch of changes at once. We hand changes a private copy of
+   * the current pairs; once it returns, readers see all of its changes
+   * together, and the whole batch costs a single copy. If changes
+   * throws an exception, none of its changes are published. changes
+   * must not hold on to the copy after it returns.
+   */
+  public void update(Consumer<AssociativeArray<K, V>> changes) {
+    synchronized (this.writeLock) {
+      AssociativeArray<K, V> next = this.snapshot.clone();
+      changes.accept(next);
+      this.snapshot = next;
+    } // synchronized
+  } // update(Consumer)
+} // class CopyOnWriteAssociativeArray
@@ -0,0 +1,615 @@
+package structures;
+
+import java.util.Arrays;
+
+/**
+ * An associative array that uses bucketized cuckoo hashing, so that
+ * no lookup ever examines more than two buckets (plus a tiny stash).
+ * That suits lookups with hard latency budgets, where the worst case
+ * matters more than the average.
+ *
+ * Each key has two candidate buckets of four slots, chosen by two
+ * seeded hash functions, and always lives in one of them. When both
+ * are full, set moves a pair out of one of them to its other bucket,
+ * which may move another pair in turn. If that chain gets too long,
+ * the homeless pair goes into a small stash; when the stash is full
+ * too, we rehash everything with new seeds, and grow if new seeds do
+ * not help. The table stays at most 90% full, where four-slot buckets
+ * rarely need any of that.
+ *
+ * Since both buckets come from the same 32-bit hash, no seed can
+ * separate more than eight keys whose hashes are all equal. Rather
+ * than grow without end, the stash grows to take the extra keys, and
+ * only lookups of those keys get slower.
+ *
+ * The slot of a pair depends on its hash, so toString shows the pairs
+ * in no particular order.
+ *
+ * @author Seunghyeon (Hyeon) Kim
+ */
+public class CuckooAssociativeArray<K, V> {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The default number of pairs a new array can hold without growing.
+   */
+  static final int DEFAULT_CAPACITY = 16;
+
+  /**
+   * The number of slots in a bucket.
+   */
+  static final int BUCKET_SIZE = 4;
+
+  /**
+   * The largest fraction of the slots that may be in use.
+   */
+  static final double MAX_LOAD = 0.9;
+
+  /**
+   * The number of pairs the stash holds at first.
+   */
+  static final int STASH_SIZE = 4;
+
+  /**
+   * How many pairs an insertion may move before it gives up.
+   */
+  static final int MAX_KICKS = 128;
+
+  /**
+   * How many seeds we try when rehashing before we grow instead.
+   */
+  static final int MAX_SEEDS = 4;
+
+  /**
+   * The largest number of buckets we are willing to allocate.
+   */
+  static final int MAX_BUCKETS = 1 << 28;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of pairs, including the one whose key is null.
+   */
+  int size;
+
+  /**
+   * The keys, BUCKET_SIZE slots to a bucket. null marks an empty slot;
+   * the pair whose key is null (if any) is stored outside the table.
+   */
+  Object[] keys;
+
+  /**
+   * The values, at the same slots as their keys.
+   */
+  Object[] values;
+
+  /**
+   * The hashes of the keys, at the same slots as the keys, so that
+   * moving and rehashing pairs never calls hashCode.
+   */
+  int[] hashes;
+
+  /**
+   * The number of buckets minus one (the number is a power of two).
+   */
+  int mask;
+
+  /**
+   * The seed of the hash function for the first bucket of each key.
+   */
+  int seed1;
+
+  /**
+   * The seed of the hash function for the second bucket of each key.
+   */
+  int seed2;
+
+  /**
+   * The keys of the pairs that did not fit in their buckets, in
+   * positions 0 to stashSize-1.
+   */
+  Object[] stashKeys = new Object[STASH_SIZE];
+
+  /**
+   * The values of the stashed pairs, at the same positions as their
+   * keys.
+   */
+  Object[] stashValues = new Object[STASH_SIZE];
+
+  /**
+   * The hashes of the stashed keys, at the same positions as the keys.
+   */
+  int[] stashHashes = new int[STASH_SIZE];
+
+  /**
+   * The number of pairs in the stash.
+   */
+  int stashSize;
+
+  /**
+   * Whether there is a pair whose key is null.
+   */
+  boolean hasNullKey;
+
+  /**
+   * The value associated with null, if there is one.
+   */
+  Object nullValue;
+
+  /**
+   * The state of the generator that picks which pair to move and new
+   * seeds.
+   */
+  int random = 0x2545F491;
+
+  /**
+   * The key of the pair that place could not find room for.
+   */
+  Object homelessKey;
+
+  /**
+   * The value of the pair that place could not find room for.
+   */
+  Object homelessValue;
+
+  /**
+   * The hash of the key that place could not find room for.
+   */
+  int homelessHash;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty associative array.
+   */
+  public CuckooAssociativeArray() {
+    this(DEFAULT_CAPACITY);
+  } // CuckooAssociativeArray()
+
+  /**
+   * Create a new, empty associative array that can hold expectedSize
+   * pairs without growing.
+   *
+   * @throws IllegalArgumentException
+   *   when expectedSize is negative.
+   */
+  public CuckooAssociativeArray(int expectedSize) {
+    if (expectedSize < 0) {
+      throw new IllegalArgumentException("invalid size: " + expectedSize);
+    }
+    long needed = (long) Math.ceil(expectedSize / (MAX_LOAD * BUCKET_SIZE));
+    if (needed > MAX_BUCKETS) {
+      throw new OutOfMemoryError("associative array too large");
+    }
+    // at least two buckets, so that a key's two buckets can differ
+    int buckets =
+      Math.max(2, Integer.highestOneBit((int) Math.max(needed, 1) - 1) << 1);
+    this.allocate(buckets);
+    this.seed1 = this.nextRandom();
+    this.seed2 = this.nextRandom();
+    this.size = 0;
+  } // CuckooAssociativeArray(int)
+
+  // +------------------+--------------------------------------------
+  // | Standard Methods |
+  // +------------------+
+
+  /**
+   * Create a copy of this associative array. The copy shares its keys
+   * and values with the original.
+   */
+  public CuckooAssociativeArray<K, V> clone() {
+    CuckooAssociativeArray<K, V> temp = new CuckooAssociativeArray<K, V>(0);
+    temp.keys = this.keys.clone();
+    temp.values = this.values.clone();
+    temp.hashes = this.hashes.clone();
+    temp.mask = this.mask;
+    temp.seed1 = this.seed1;
+    temp.seed2 = this.seed2;
+    temp.stashKeys = this.stashKeys.clone();
+    temp.stashValues = this.stashValues.clone();
+    temp.stashHashes = this.stashHashes.clone();
+    temp.stashSize = this.stashSize;
+    temp.hasNullKey = this.hasNullKey;
+    temp.nullValue = this.nullValue;
+    temp.size = this.size;
+    return temp;
+  } // clone()
+
+  /**
+   * Convert the array to a string.
+   */
+  public String toString() {
+    StringBuilder ret = new StringBuilder("{ ");
+    int seen = 0;
+    if (this.hasNullKey) {
+      ret.append("null: ").append(this.nullValue);
+      seen++;
+      ret.append((seen != this.size) ? ", " : " ");
+    } // if
+    for (int slot = 0; slot < this.keys.length; slot++) {
+      if (this.keys[slot] != null) {
+        ret.append(this.keys[slot]).append(": ").append(this.values[slot]);
+        seen++;
+        ret.append((seen != this.size) ? ", " : " ");
+      } // if
+    } // for
+    for (int i = 0; i < this.stashSize; i++) {
+      ret.append(this.stashKeys[i]).append(": ").append(this.stashValues[i]);
+      seen++;
+      ret.append((seen != this.size) ? ", " : " ");
+    } // for
+    return ret.append("}").toString();
+  } // toString()
+
+  // +----------------+----------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  /**
+   * Set the value associated with key to value. Future calls to
+   * get(key) will return value.
+   */
+  public void set(K key, V value) {
+    if (key == null) {
+      if (!this.hasNullKey) {
+        this.hasNullKey = true;
+        this.size++;
+      } // if
+      this.nullValue = value;
+      return;
+    } // if
+    int h = AssociativeArray.hash(key);
+    int slot = this.slotOf(key, h);
+    if (slot >= 0) {
+      this.values[slot] = value;
+      return;
+    } // if
+    int stashed = this.stashIndexOf(key, h);
+    if (stashed >= 0) {
+      this.stashValues[stashed] = value;
+      return;
+    } // if
+    // grow before the table gets too full for cuckoo moves to succeed
+    if (this.size - (this.hasNullKey ? 1 : 0) + 1
+        > MAX_LOAD * this.keys.length) {
+      this.rebuild(this.bucketCount() * 2);
+    } // if
+    if (!this.place(key, value, h)) {
+      // some pair, not necessarily this one, was left without a slot
+      Object extraKey = this.homelessKey;
+      Object extraValue = this.homelessValue;
+      this.homelessKey = null;
+      this.homelessValue = null;
+      this.rebuild(this.bucketCount(), extraKey, extraValue,
+        this.homelessHash);
+    } // if
+    this.size++;
+  } // set(K, V)
+
+  /**
+   * Get the value associated with key.
+   *
+   * @throws KeyNotFoundException
+   *   when the key does not appear in the associative array.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public V get(K key) throws KeyNotFoundException {
+    if (key == null) {
+      if (this.hasNullKey) {
+        return (V) this.nullValue;
+      } // if
+      throw new KeyNotFoundException();
+    } // if
+    int h = AssociativeArray.hash(key);
+    int slot = this.slotOf(key, h);
+    if (slot >= 0) {
+      return (V) this.values[slot];
+    } // if
+    int stashed = this.stashIndexOf(key, h);
+    if (stashed >= 0) {
+      return (V) this.stashValues[stashed];
+    } // if
+    throw new KeyNotFoundException();
+  } // get(K)
+
+  /**
+   * Get the value associated with key, or defaultValue when the key
+   * does not appear in the associative array.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public V getOrDefault(K key, V defaultValue) {
+    if (key == null) {
+      return this.hasNullKey ? (V) this.nullValue : defaultValue;
+    } // if
+    int h = AssociativeArray.hash(key);
+    int slot = this.slotOf(key, h);
+    if (slot >= 0) {
+      return (V) this.values[slot];
+    } // if
+    int stashed = this.stashIndexOf(key, h);
+    return (stashed >= 0) ? (V) this.stashValues[stashed] : defaultValue;
+  } // getOrDefault(K, V)
+
+  /**
+   * Determine if key appears in the associative array.
+   */
+  public boolean hasKey(K key) {
+    if (key == null) {
+      return this.hasNullKey;
+    } // if
+    int h = AssociativeArray.hash(key);
+    return this.slotOf(key, h) >= 0 || this.stashIndexOf(key, h) >= 0;
+  } // hasKey(K)
+
+  /**
+   * Remove the key/value pair associated with a key. Future calls
+   * to get(key) will throw an exception. If the key does not appear
+   * in the associative array, does nothing.
+   */
+  public void remove(K key) {
+    if (key == null) {
+      if (this.hasNullKey) {
+        this.hasNullKey = false;
+        this.nullValue = null;
+        this.size--;
+      } // if
+      return;
+    } // if
+    int h = AssociativeArray.hash(key);
+    int slot = this.slotOf(key, h);
+    if (slot >= 0) {
+      this.keys[slot] = null;
+      this.values[slot] = null;
+      this.size--;
+      return;
+    } // if
+    int stashed = this.stashIndexOf(key, h);
+    if (stashed >= 0) {
+      // fill the gap with the last pair in the stash
+      int last = --this.stashSize;
+      this.stashKeys[stashed] = this.stashKeys[last];
+      this.stashValues[stashed] = this.stashValues[last];
+      this.stashHashes[stashed] = this.stashHashes[last];
+      this.stashKeys[last] = null;
+      this.stashValues[last] = null;
+      this.size--;
+    } // if
+  } // remove(K)
+
+  /**
+   * Determine how many values are in the associative array.
+   */
+  public int size() {
+    return this.size;
+  } // size()
+
+  // +-----------------+---------------------------------------------
+  // | Private Methods |
+  // +-----------------+
+
+  /**
+   * Find the slot that holds key (which is not null and has hash h),
+   * or -1 if it is not in either of its buckets.
+   */
+  private int slotOf(Object key, int h) {
+    int slot = this.bucket1(h) * BUCKET_SIZE;
+    for (int i = slot; i < slot + BUCKET_SIZE; i++) {
+      if (this.hashes[i] == h && key.equals(this.keys[i])) {
+        return i;
+      } // if
+    } // for
+    slot = this.bucket2(h) * BUCKET_SIZE;
+    for (int i = slot; i < slot + BUCKET_SIZE; i++) {
+      if (this.hashes[i] == h && key.equals(this.keys[i])) {
+        return i;
+      } // if
+    } // for
+    return -1;
+  } // slotOf(Object, int)
+
+  /**
+   * Find the position of key (which is not null and has hash h) in
+   * the stash, or -1 if it is not there.
+   */
+  private int stashIndexOf(Object key, int h) {
+    for (int i = 0; i < this.stashSize; i++) {
+      if (this.stashHashes[i] == h && key.equals(this.stashKeys[i])) {
+        return i;
+      } // if
+    } // for
+    return -1;
+  } // stashIndexOf(Object, int)
+
+  /**
+   * Put a pair in one of its buckets, moving other pairs to their
+   * other buckets to make room, or else in the stash. Returns false,
+   * with the pair that is left over in homelessKey, homelessValue and
+   * homelessHash, if neither works.
+   */
+  private boolean place(Object key, Object value, int h) {
+    if (this.putInBucket(this.bucket1(h), key, value, h)
+        || this.putInBucket(this.bucket2(h), key, value, h)) {
+      return true;
+    } // if
+    int bucket = this.bucket1(h);
+    for (int kick = 0; kick < MAX_KICKS; kick++) {
+      // swap the pair with a random one from the bucket
+      int slot = bucket * BUCKET_SIZE + (this.nextRandom() & (BUCKET_SIZE - 1));
+      Object evictedKey = this.keys[slot];
+      Object evictedValue = this.values[slot];
+      int evictedHash = this.hashes[slot];
+      this.keys[slot] = key;
+      this.values[slot] = value;
+      this.hashes[slot] = h;
+      key = evictedKey;
+      value = evictedValue;
+      h = evictedHash;
+      // and try the other bucket of the pair we took out
+      int first = this.bucket1(h);
+      bucket = (bucket == first) ? this.bucket2(h) : first;
+      if (this.putInBucket(bucket, key, value, h)) {
+        return true;
+      } // if
+    } // for
+    if (this.stashSize < this.stashKeys.length) {
+      this.stashKeys[this.stashSize] = key;
+      this.stashValues[this.stashSize] = value;
+      this.stashHashes[this.stashSize] = h;
+      this.stashSize++;
+      return true;
+    } // if
+    this.homelessKey = key;
+    this.homelessValue = value;
+    this.homelessHash = h;
+    return false;
+  } // place(Object, Object, int)
+
+  /**
+   * Put a pair in an empty slot of bucket, if there is one.
+   */
+  private boolean putInBucket(int bucket, Object key, Object value, int h) {
+    int slot = bucket * BUCKET_SIZE;
+    for (int i = slot; i < slot + BUCKET_SIZE; i++) {
+      if (this.keys[i] == null) {
+        this.keys[i] = key;
+        this.values[i] = value;
+        this.hashes[i] = h;
+        return true;
+      } // if
+    } // for
+    return false;
+  } // putInBucket(int, Object, Object, int)
+
+  /**
+   * Move every pair in the table and the stash into a table with at
+   * least the given number of buckets, using new seeds.
+   */
+  private void rebuild(int buckets) {
+    this.rebuild(buckets, null, null, 0);
+  } // rebuild(int)
+
+  /**
+   * Move every pair in the table and the stash, plus the pair of
+   * extraKey (unless it is null), into a table with at least the given
+   * number of buckets, using new seeds. If some pair does not fit, try
+   * again with other seeds. After every MAX_SEEDS tries, double the
+   * number of buckets, or, if the table is no more than half full and
+   * so space is not the problem, the size of the stash.
+   */
+  private void rebuild(int buckets, Object extraKey, Object extraValue,
+      int extraHash) {
+    int count = 0;
+    Object[] allKeys = new Object[this.keys.length + this.stashSize + 1];
+    Object[] allValues = new Object[allKeys.length];
+    int[] allHashes = new int[allKeys.length];
+    for (int slot = 0; slot < this.keys.length; slot++) {
+      if (this.keys[slot] != null) {
+        allKeys[count] = this.keys[slot];
+        allValues[count] = this.values[slot];
+        allHashes[count] = this.hashes[slot];
+        count++;
+      } // if
+    } // for
+    for (int i = 0; i < this.stashSize; i++) {
+      allKeys[count] = this.stashKeys[i];
+      allValues[count] = this.stashValues[i];
+      allHashes[count] = this.stashHashes[i];
+      count++;
+    } // for
+    if (extraKey != null) {
+      allKeys[count] = extraKey;
+      allValues[count] = extraValue;
+      allHashes[count] = extraHash;
+      count++;
+    } // if
+    for (int attempt = 1; ; attempt++) {
+      this.allocate(buckets);
+      this.seed1 = this.nextRandom();
+      this.seed2 = this.nextRandom();
+      boolean placed = true;
+      for (int i = 0; i < count && placed; i++) {
+        placed = this.place(allKeys[i], allValues[i], allHashes[i]);
+      } // for
+      if (placed) {
+        return;
+      } // if
+      if (attempt % MAX_SEEDS == 0) {
+        if (2 * count <= buckets * BUCKET_SIZE) {
+          int stashLength = 2 * this.stashKeys.length;
+          this.stashKeys = new Object[stashLength];
+          this.stashValues = new Object[stashLength];
+          this.stashHashes = new int[stashLength];
+        } else if (buckets < MAX_BUCKETS) {
+          buckets *= 2;
+        } else {
+          throw new OutOfMemoryError("associative array too large");
+        } // if/else
+      } // if
+    } // for
+  } // rebuild(int, Object, Object, int)
+
+  /**
+   * Replace the table and the stash with empty ones, with the given
+   * number of buckets.
+   */
+  private void allocate(int buckets) {
+    this.keys = new Object[buckets * BUCKET_SIZE];
+    this.values = new Object[buckets * BUCKET_SIZE];
+    this.hashes = new int[buckets * BUCKET_SIZE];
+    this.mask = buckets - 1;
+    Arrays.fill(this.stashKeys, null);
+    Arrays.fill(this.stashValues, null);
+    this.stashSize = 0;
+  } // allocate(int)
+
+  /**
+   * Get the number of buckets.
+   */
+  private int bucketCount() {
+    return this.mask + 1;
+  } // bucketCount()
+
+  /**
+   * Get the first bucket of a key whose hash is h.
+   */
+  private int bucket1(int h) {
+    return mix(h ^ this.seed1) & this.mask;
+  } // bucket1(int)
+
+  /**
+   * Get the second bucket of a key whose hash is h.
+   */
+  private int bucket2(int h) {
+    return mix(h ^ this.seed2) & this.mask;
+  } // bucket2(int)
+
+  /**
+   * Get the next number from a xorshift generator.
+   */
+  private int nextRandom() {
+    int x = this.random;
+    x ^= x << 13;
+    x ^= x >>> 17;
+    x ^= x << 5;
+    return this.random = x;
+  } // nextRandom()
+
+  /**
+   * Scramble the bits of x (the finalizer of MurmurHash3), so that
+   * different seeds give unrelated buckets.
+   */
+  static int mix(int x) {
+    x ^= x >>> 16;
+    x *= 0x85EBCA6B;
+    x ^= x >>> 13;
+    x *= 0xC2B2AE35;
+    return x ^ (x >>> 16);
+  } // mix(int)
+} // class CuckooAssociativeArray
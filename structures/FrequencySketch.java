@@ -0,0 +1,161 @@
+package structures;
+
+/**
+ * An estimate of how often each hash has been seen recently: a
+ * Count-Min sketch of 4-bit counters. Each hash bumps one counter in
+ * each of four rows, and its frequency is the smallest of those four
+ * counters, which may be too high (if other hashes share all four)
+ * but is never too low. Sixteen counters are packed into each long.
+ *
+ * To forget the distant past, the sketch halves every counter once it
+ * has counted ten times as many events as the cache it serves can
+ * hold. Counters stop at 15, which is enough to tell the popular from
+ * the rest.
+ *
+ * @author Seunghyeon (Hyeon) Kim
+ */
+final class FrequencySketch {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The seeds of the hashes of the four rows.
+   */
+  static final long[] SEEDS = {
+    0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L,
+    0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+  };
+
+  /**
+   * The highest bit of each counter, which halving must clear.
+   */
+  static final long RESET_MASK = 0x7777777777777777L;
+
+  /**
+   * The lowest bit of each counter, which halving throws away.
+   */
+  static final long ONE_MASK = 0x1111111111111111L;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The counters, sixteen to a long.
+   */
+  final long[] table;
+
+  /**
+   * The number of longs minus one, for picking a long.
+   */
+  final int mask;
+
+  /**
+   * The number of events to count before halving the counters.
+   */
+  final int sampleSize;
+
+  /**
+   * The number of events counted since the last halving.
+   */
+  int additions;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a sketch for a cache that holds capacity pairs.
+   */
+  FrequencySketch(int capacity) {
+    int length = Integer.highestOneBit(Math.max(capacity, 8) - 1) << 1;
+    this.table = new long[Math.min(length, 1 << 30)];
+    this.mask = this.table.length - 1;
+    this.sampleSize = (capacity > (Integer.MAX_VALUE / 10)) ? Integer.MAX_VALUE
+                                                           : 10 * capacity;
+  } // FrequencySketch(int)
+
+  /**
+   * Create a copy of other.
+   */
+  FrequencySketch(FrequencySketch other) {
+    this.table = other.table.clone();
+    this.mask = other.mask;
+    this.sampleSize = other.sampleSize;
+    this.additions = other.additions;
+  } // FrequencySketch(FrequencySketch)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Estimate how often h has been seen, from 0 to 15.
+   */
+  int frequency(int h) {
+    int frequency = 15;
+    for (int row = 0; row < 4; row++) {
+      long x = spread(h, row);
+      int shift = counterShift(x, row);
+      int count = (int) ((this.table[(int) x & this.mask] >>> shift) & 0xF);
+      frequency = Math.min(frequency, count);
+    } // for
+    return frequency;
+  } // frequency(int)
+
+  /**
+   * Count one more sighting of h.
+   */
+  void increment(int h) {
+    boolean added = false;
+    for (int row = 0; row < 4; row++) {
+      long x = spread(h, row);
+      int shift = counterShift(x, row);
+      int i = (int) x & this.mask;
+      if (((this.table[i] >>> shift) & 0xF) != 0xF) {
+        this.table[i] += 1L << shift;
+        added = true;
+      } // if
+    } // for
+    if (added && ++this.additions >= this.sampleSize) {
+      this.halve();
+    } // if
+  } // increment(int)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Halve every counter. Each odd counter loses half an event, so the
+   * number of additions drops by a little more than half.
+   */
+  void halve() {
+    int odd = 0;
+    for (int i = 0; i < this.table.length; i++) {
+      odd += Long.bitCount(this.table[i] & ONE_MASK);
+      this.table[i] = (this.table[i] >>> 1) & RESET_MASK;
+    } // for
+    this.additions = (this.additions - (odd >>> 2)) >>> 1;
+  } // halve()
+
+  /**
+   * Mix h with the seed of row, so that the rows pick independent
+   * counters.
+   */
+  static long spread(int h, int row) {
+    long x = (h + SEEDS[row]) * SEEDS[row];
+    return x ^ (x >>> 32);
+  } // spread(int, int)
+
+  /**
+   * Get how far to shift a long to reach the counter that x picks in
+   * row. The high bits of x pick one of four groups of counters and
+   * the row picks one counter within it, so the four rows of a hash
+   * never share a counter when they share a long.
+   */
+  static int counterShift(long x, int row) {
+    return (int) (((x >>> 60) & 3) << 4) + (row << 2);
+  } // counterShift(long, int)
+} // class FrequencySketch
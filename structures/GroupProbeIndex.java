@@ -0,0 +1,291 @@
+package structures;
+
+import java.util.Arrays;
+
+/**
+ * A hash index that probes whole groups of eight slots at a time, in
+ * the style of Abseil's Swiss tables. Next to each slot we keep a
+ * one-byte control tag: EMPTY, DELETED, or seven bits of the hash of
+ * the key in the slot. The tags of a group are packed into one long,
+ * so a few arithmetic operations on that long compare a hash against
+ * all eight tags at once (SIMD within a register). Only the slots
+ * whose tags match need a look at the arrays of hashes and keys, and
+ * a lookup stops at the first group that has an empty slot, so misses
+ * rarely get past the first group.
+ *
+ * Groups are probed in triangular order (home, home+1, home+3, ...),
+ * which visits every group because their number is a power of two.
+ *
+ * @author Seunghyeon (Hyeon) Kim
+ */
+final class GroupProbeIndex extends HashIndex {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of slots in a group.
+   */
+  static final int GROUP_SIZE = 8;
+
+  /**
+   * The tag of an empty slot.
+   */
+  static final long CTRL_EMPTY = 0x80;
+
+  /**
+   * The tag of a slot whose entry was deleted. Lookups must probe past
+   * it, but insertions may reuse it.
+   */
+  static final long CTRL_DELETED = 0xFE;
+
+  /**
+   * A one in the lowest bit of each tag.
+   */
+  static final long LSBS = 0x0101010101010101L;
+
+  /**
+   * A one in the highest bit of each tag.
+   */
+  static final long MSBS = 0x8080808080808080L;
+
+  /**
+   * The tags of a group of empty slots.
+   */
+  static final long ALL_EMPTY = CTRL_EMPTY * LSBS;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The tags, eight to a group, with the tag of slot i of a group in
+   * bits 8i to 8i+7.
+   */
+  final long[] ctrl;
+
+  /**
+   * The number of groups minus one, for wrapping around.
+   */
+  final int groupMask;
+
+  /**
+   * The number of empty slots.
+   */
+  int empties;
+
+  /**
+   * The number of deleted slots.
+   */
+  int tombstones;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create an index with length slots (a power of two, rounded up to
+   * a whole group), each able to hold positions less than capacity.
+   */
+  GroupProbeIndex(int length, int capacity) {
+    super(Math.max(length, GROUP_SIZE), capacity);
+    this.ctrl = new long[this.slots.length / GROUP_SIZE];
+    this.groupMask = this.ctrl.length - 1;
+    this.clear();
+  } // GroupProbeIndex(int, int)
+
+  /**
+   * Create a copy of other.
+   */
+  GroupProbeIndex(GroupProbeIndex other) {
+    super(other);
+    this.ctrl = other.ctrl.clone();
+    this.groupMask = other.groupMask;
+    this.empties = other.empties;
+    this.tombstones = other.tombstones;
+  } // GroupProbeIndex(GroupProbeIndex)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  @Override
+  int find(Object key, int h, Object[] keys, int[] hashes) {
+    long tags = tag(h) * LSBS;
+    int group = h & this.groupMask;
+    for (int step = 1; ; step++) {
+      long word = this.ctrl[group];
+      for (long m = matchTag(word, tags); m != 0; m &= m - 1) {
+        int slot = group * GROUP_SIZE + (Long.numberOfTrailingZeros(m) >>> 3);
+        int pos = this.slots.get(slot);
+        if (hashes[pos] == h && AssociativeArray.keyEquals(keys[pos], key)) {
+          return slot;
+        } // if
+      } // for
+      // had the key been inserted, it would have gone in this group
+      if (matchEmpty(word) != 0) {
+        return -1;
+      } // if
+      group = (group + step) & this.groupMask;
+    } // for
+  } // find(Object, int, Object[], int[])
+
+  @Override
+  void insert(int pos, int[] hashes) {
+    int h = hashes[pos];
+    int slot = this.freeSlot(h);
+    if (this.tagAt(slot) == CTRL_EMPTY) {
+      // clear out the deleted slots before they crowd out the empty
+      // ones, which are what make lookups stop
+      if (this.tombstones > 0 && this.tombstones >= this.empties) {
+        this.rebuild(hashes);
+        slot = this.freeSlot(h);
+      } // if
+      this.empties--;
+    } else {
+      this.tombstones--;
+    } // if/else
+    this.setTag(slot, tag(h));
+    this.slots.set(slot, pos);
+  } // insert(int, int[])
+
+  @Override
+  void delete(int slot, int[] hashes) {
+    this.slots.set(slot, AssociativeArray.EMPTY);
+    // a lookup that reaches a group with an empty slot stops there, so
+    // if the group already has one, no lookup needs to probe past this
+    // slot either
+    if (matchEmpty(this.ctrl[slot / GROUP_SIZE]) != 0) {
+      this.setTag(slot, CTRL_EMPTY);
+      this.empties++;
+    } else {
+      this.setTag(slot, CTRL_DELETED);
+      this.tombstones++;
+    } // if/else
+  } // delete(int, int[])
+
+  /**
+   * Determine how many groups a lookup of the pair in slot examines.
+   */
+  @Override
+  int probeLength(int slot, int[] hashes) {
+    int target = slot / GROUP_SIZE;
+    int group = hashes[this.slots.get(slot)] & this.groupMask;
+    int probes = 1;
+    for (int step = 1; group != target; step++) {
+      group = (group + step) & this.groupMask;
+      probes++;
+    } // for
+    return probes;
+  } // probeLength(int, int[])
+
+  @Override
+  HashIndex copy() {
+    return new GroupProbeIndex(this);
+  } // copy()
+
+  @Override
+  void relocate(int h, int from, int to) {
+    long tags = tag(h) * LSBS;
+    int group = h & this.groupMask;
+    for (int step = 1; ; step++) {
+      for (long m = matchTag(this.ctrl[group], tags); m != 0; m &= m - 1) {
+        int slot = group * GROUP_SIZE + (Long.numberOfTrailingZeros(m) >>> 3);
+        if (this.slots.get(slot) == from) {
+          this.slots.set(slot, to);
+          return;
+        } // if
+      } // for
+      group = (group + step) & this.groupMask;
+    } // for
+  } // relocate(int, int, int)
+
+  @Override
+  void clear() {
+    super.clear();
+    Arrays.fill(this.ctrl, ALL_EMPTY);
+    this.empties = this.slots.length;
+    this.tombstones = 0;
+  } // clear()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Find the first empty or deleted slot in the probe sequence of h.
+   */
+  private int freeSlot(int h) {
+    int group = h & this.groupMask;
+    for (int step = 1; ; step++) {
+      long free = this.ctrl[group] & MSBS;
+      if (free != 0) {
+        return group * GROUP_SIZE + (Long.numberOfTrailingZeros(free) >>> 3);
+      } // if
+      group = (group + step) & this.groupMask;
+    } // for
+  } // freeSlot(int)
+
+  /**
+   * Reinsert every entry, which turns the deleted slots back into
+   * empty ones.
+   */
+  private void rebuild(int[] hashes) {
+    int[] positions = new int[this.slots.length - this.empties
+      - this.tombstones];
+    int count = 0;
+    for (int slot = 0; slot < this.slots.length; slot++) {
+      int pos = this.slots.get(slot);
+      if (pos != AssociativeArray.EMPTY) {
+        positions[count++] = pos;
+      } // if
+    } // for
+    this.clear();
+    for (int i = 0; i < count; i++) {
+      this.insert(positions[i], hashes);
+    } // for
+  } // rebuild(int[])
+
+  /**
+   * Get the tag of a slot.
+   */
+  private long tagAt(int slot) {
+    return (this.ctrl[slot / GROUP_SIZE] >>> ((slot % GROUP_SIZE) * 8)) & 0xFF;
+  } // tagAt(int)
+
+  /**
+   * Set the tag of a slot.
+   */
+  private void setTag(int slot, long tag) {
+    int shift = (slot % GROUP_SIZE) * 8;
+    int group = slot / GROUP_SIZE;
+    this.ctrl[group] = (this.ctrl[group] & ~(0xFFL << shift)) | (tag << shift);
+  } // setTag(int, long)
+
+  /**
+   * Get the tag of a full slot whose key has hash h: its top seven
+   * bits, since the bottom bits pick the group.
+   */
+  static long tag(int h) {
+    return h >>> 25;
+  } // tag(int)
+
+  /**
+   * Find the tags in word that equal the tag repeated in tags. The
+   * result has the high bit set in each matching tag. It may also
+   * flag a tag just above a real match, but find checks every
+   * candidate anyway.
+   */
+  static long matchTag(long word, long tags) {
+    long x = word ^ tags;
+    return (x - LSBS) & ~x & MSBS;
+  } // matchTag(long, long)
+
+  /**
+   * Find the empty tags in word. EMPTY is the only tag that has its
+   * high bit set and its second-lowest bit clear.
+   */
+  static long matchEmpty(long word) {
+    return word & ~(word << 6) & MSBS;
+  } // matchEmpty(long)
+} // class GroupProbeIndex
@@ -0,0 +1,153 @@
+package structures;
+
+/**
+ * The hash index of an AssociativeArray, which maps each key to the
+ * position of its pair in the dense arrays of keys, values, and
+ * hashes. Subclasses decide how keys are probed for; they share the
+ * slot storage and the bookkeeping here.
+ *
+ * An index never stores keys itself. To compare a key against the
+ * pair in a slot, it looks at the arrays of keys and hashes that the
+ * associative array passes in.
+ *
+ * @author Seunghyeon (Hyeon) Kim
+ */
+abstract class HashIndex {
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The slots, each of which holds a position or EMPTY.
+   */
+  final CompactIndex slots;
+
+  /**
+   * The number of slots minus one, for wrapping around.
+   */
+  final int mask;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create an index with length slots (a power of two), each able to
+   * hold positions less than capacity.
+   */
+  HashIndex(int length, int capacity) {
+    this.slots = new CompactIndex(length, capacity);
+    this.mask = length - 1;
+  } // HashIndex(int, int)
+
+  /**
+   * Create a copy of other.
+   */
+  HashIndex(HashIndex other) {
+    this.slots = new CompactIndex(other.slots);
+    this.mask = other.mask;
+  } // HashIndex(HashIndex)
+
+  // +------------------+--------------------------------------------
+  // | Probing Methods  |
+  // +------------------+
+
+  /**
+   * Find the slot that refers to key, whose hash is h, or -1 if there
+   * is no such slot.
+   */
+  abstract int find(Object key, int h, Object[] keys, int[] hashes);
+
+  /**
+   * Record that the pair at position pos (whose hash is hashes[pos])
+   * is in the index. Assumes that its key is not there yet.
+   */
+  abstract void insert(int pos, int[] hashes);
+
+  /**
+   * Empty a slot, found by find.
+   */
+  abstract void delete(int slot, int[] hashes);
+
+  /**
+   * Determine how many slots a lookup of the pair in slot examines.
+   */
+  abstract int probeLength(int slot, int[] hashes);
+
+  /**
+   * Create a copy of this index.
+   */
+  abstract HashIndex copy();
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the position that a slot refers to.
+   */
+  int positionAt(int slot) {
+    return this.slots.get(slot);
+  } // positionAt(int)
+
+  /**
+   * Record that the pair whose hash is h moved from position from to
+   * position to.
+   */
+  void relocate(int h, int from, int to) {
+    int slot = h & this.mask;
+    while (this.slots.get(slot) != from) {
+      slot = (slot + 1) & this.mask;
+    } // while
+    this.slots.set(slot, to);
+  } // relocate(int, int, int)
+
+  /**
+   * Empty every slot.
+   */
+  void clear() {
+    this.slots.clear();
+  } // clear()
+
+  /**
+   * Get the number of slots.
+   */
+  int length() {
+    return this.slots.length;
+  } // length()
+
+  /**
+   * Determine whether the slots can hold positions less than capacity.
+   */
+  boolean fits(int capacity) {
+    return this.slots.fits(capacity);
+  } // fits(int)
+
+  /**
+   * Determine the largest number of slots that a successful lookup
+   * examines.
+   */
+  int maxProbeLength(int[] hashes) {
+    int max = 0;
+    for (int slot = 0; slot < this.slots.length; slot++) {
+      if (this.slots.get(slot) != AssociativeArray.EMPTY) {
+        max = Math.max(max, this.probeLength(slot, hashes));
+      } // if
+    } // for
+    return max;
+  } // maxProbeLength(int[])
+
+  /**
+   * Determine the total number of slots that looking up every key
+   * once examines.
+   */
+  long totalProbeLength(int[] hashes) {
+    long total = 0;
+    for (int slot = 0; slot < this.slots.length; slot++) {
+      if (this.slots.get(slot) != AssociativeArray.EMPTY) {
+        total += this.probeLength(slot, hashes);
+      } // if
+    } // for
+    return total;
+  } // totalProbeLength(int[])
+} // class HashIndex
@@ -0,0 +1,302 @@
+package structures;
+
+/**
+ * An associative array with int keys and int values. It offers the
+ * same operations as AssociativeArray<Integer, Integer>, but stores
+ * the keys and values directly in int arrays, so it boxes nothing and
+ * allocates nothing per pair.
+ *
+ * The pairs live in an open-addressing hash table with linear probing.
+ * The slot of a pair depends on its hash, so toString shows the pairs
+ * in no particular order.
+ *
+ * @author Seunghyeon (Hyeon) Kim
+ */
+public class IntIntAssociativeArray {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The default number of pairs a new array can hold without growing.
+   */
+  static final int DEFAULT_CAPACITY = 16;
+
+  /**
+   * The key that marks an empty slot. The pair whose key is FREE (if
+   * any) is stored outside the table.
+   */
+  static final int FREE = 0;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of pairs, including the one whose key is FREE.
+   */
+  int size;
+
+  /**
+   * The keys, indexed by slot. FREE marks an empty slot.
+   */
+  int[] keys;
+
+  /**
+   * The values, at the same slots as their keys.
+   */
+  int[] values;
+
+  /**
+   * Whether there is a pair whose key is FREE.
+   */
+  boolean hasFreeKey;
+
+  /**
+   * The value associated with FREE, if there is one.
+   */
+  int freeValue;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty associative array.
+   */
+  public IntIntAssociativeArray() {
+    this(DEFAULT_CAPACITY);
+  } // IntIntAssociativeArray()
+
+  /**
+   * Create a new, empty associative array that can hold expectedSize
+   * pairs without growing.
+   *
+   * @throws IllegalArgumentException
+   *   when expectedSize is negative.
+   */
+  public IntIntAssociativeArray(int expectedSize) {
+    if (expectedSize < 0) {
+      throw new IllegalArgumentException("invalid size: " + expectedSize);
+    }
+    int slots = tableLength(expectedSize);
+    this.keys = new int[slots];
+    this.values = new int[slots];
+    this.size = 0;
+  } // IntIntAssociativeArray(int)
+
+  // +------------------+--------------------------------------------
+  // | Standard Methods |
+  // +------------------+
+
+  /**
+   * Create a copy of this associative array.
+   */
+  public IntIntAssociativeArray clone() {
+    IntIntAssociativeArray temp = new IntIntAssociativeArray(0);
+    temp.keys = this.keys.clone();
+    temp.values = this.values.clone();
+    temp.size = this.size;
+    temp.hasFreeKey = this.hasFreeKey;
+    temp.freeValue = this.freeValue;
+    return temp;
+  } // clone()
+
+  /**
+   * Convert the array to a string.
+   */
+  public String toString() {
+    StringBuilder ret = new StringBuilder("{ ");
+    int seen = 0;
+    if (this.hasFreeKey) {
+      ret.append(FREE).append(": ").append(this.freeValue);
+      seen++;
+      ret.append((seen != this.size) ? ", " : " ");
+    } // if
+    for (int slot = 0; slot < this.keys.length; slot++) {
+      if (this.keys[slot] != FREE) {
+        ret.append(this.keys[slot]).append(": ").append(this.values[slot]);
+        seen++;
+        ret.append((seen != this.size) ? ", " : " ");
+      } // if
+    } // for
+    return ret.append("}").toString();
+  } // toString()
+
+  // +----------------+----------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  /**
+   * Set the value associated with key to value. Future calls to
+   * get(key) will return value.
+   */
+  public void set(int key, int value) {
+    if (key == FREE) {
+      if (!this.hasFreeKey) {
+        this.hasFreeKey = true;
+        this.size++;
+      } // if
+      this.freeValue = value;
+      return;
+    } // if
+    int mask = this.keys.length - 1;
+    int slot = mix(key) & mask;
+    while (this.keys[slot] != FREE) {
+      if (this.keys[slot] == key) {
+        this.values[slot] = value;
+        return;
+      } // if
+      slot = (slot + 1) & mask;
+    } // while
+    this.keys[slot] = key;
+    this.values[slot] = value;
+    this.size++;
+    // keep the table at most half full
+    if (2 * this.size > this.keys.length) {
+      this.rehash(2 * this.keys.length);
+    } // if
+  } // set(int, int)
+
+  /**
+   * Get the value associated with key.
+   *
+   * @throws KeyNotFoundException
+   *   when the key does not appear in the associative array.
+   */
+  public int get(int key) throws KeyNotFoundException {
+    if (key == FREE) {
+      if (this.hasFreeKey) {
+        return this.freeValue;
+      } // if
+      throw new KeyNotFoundException();
+    } // if
+    int slot = this.slotOf(key);
+    if (slot < 0) {
+      throw new KeyNotFoundException();
+    } // if
+    return this.values[slot];
+  } // get(int)
+
+  /**
+   * Get the value associated with key, or defaultValue when the key
+   * does not appear in the associative array.
+   */
+  public int getOrDefault(int key, int defaultValue) {
+    if (key == FREE) {
+      return this.hasFreeKey ? this.freeValue : defaultValue;
+    } // if
+    int slot = this.slotOf(key);
+    return (slot < 0) ? defaultValue : this.values[slot];
+  } // getOrDefault(int, int)
+
+  /**
+   * Determine if key appears in the associative array.
+   */
+  public boolean hasKey(int key) {
+    return (key == FREE) ? this.hasFreeKey : (this.slotOf(key) >= 0);
+  } // hasKey(int)
+
+  /**
+   * Remove the key/value pair associated with a key. Future calls
+   * to get(key) will throw an exception. If the key does not appear
+   * in the associative array, does nothing.
+   */
+  public void remove(int key) {
+    if (key == FREE) {
+      if (this.hasFreeKey) {
+        this.hasFreeKey = false;
+        this.size--;
+      } // if
+      return;
+    } // if
+    int slot = this.slotOf(key);
+    if (slot < 0) {
+      return;
+    } // if
+    // move later pairs of the same probe run back into the gap
+    int mask = this.keys.length - 1;
+    int gap = slot;
+    int next = (gap + 1) & mask;
+    while (this.keys[next] != FREE) {
+      int home = mix(this.keys[next]) & mask;
+      if (((next - home) & mask) >= ((next - gap) & mask)) {
+        this.keys[gap] = this.keys[next];
+        this.values[gap] = this.values[next];
+        gap = next;
+      } // if
+      next = (next + 1) & mask;
+    } // while
+    this.keys[gap] = FREE;
+    this.size--;
+  } // remove(int)
+
+  /**
+   * Determine how many values are in the associative array.
+   */
+  public int size() {
+    return this.size;
+  } // size()
+
+  // +-----------------+---------------------------------------------
+  // | Private Methods |
+  // +-----------------+
+
+  /**
+   * Find the slot that holds key (which is not FREE), or -1 if there
+   * is no such slot.
+   */
+  private int slotOf(int key) {
+    int mask = this.keys.length - 1;
+    int slot = mix(key) & mask;
+    while (this.keys[slot] != FREE) {
+      if (this.keys[slot] == key) {
+        return slot;
+      } // if
+      slot = (slot + 1) & mask;
+    } // while
+    return -1;
+  } // slotOf(int)
+
+  /**
+   * Move all of the pairs into a table with the given number of slots.
+   */
+  private void rehash(int slots) {
+    int[] oldKeys = this.keys;
+    int[] oldValues = this.values;
+    this.keys = new int[slots];
+    this.values = new int[slots];
+    int mask = slots - 1;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != FREE) {
+        int slot = mix(oldKeys[i]) & mask;
+        while (this.keys[slot] != FREE) {
+          slot = (slot + 1) & mask;
+        } // while
+        this.keys[slot] = oldKeys[i];
+        this.values[slot] = oldValues[i];
+      } // if
+    } // for
+  } // rehash(int)
+
+  /**
+   * Determine how many slots a table needs to hold pairs pairs while
+   * staying at most half full.
+   */
+  static int tableLength(int pairs) {
+    long needed = Math.max(2L * pairs, 2);
+    if (needed > (1 << 30)) {
+      throw new OutOfMemoryError("associative array too large");
+    } // if
+    return Integer.highestOneBit((int) needed - 1) << 1;
+  } // tableLength(int)
+
+  /**
+   * Scramble the bits of a key, so that nearby keys land in distant
+   * slots.
+   */
+  static int mix(int key) {
+    int h = key * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  } // mix(int)
+} // class IntIntAssociativeArray
@@ -7,6 +7,19 @@ package structures;
  * @author Samuel A. Rebelsky
  */
 public class KeyNotFoundException extends Exception {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * A shared exception without a stack trace, for callers that only
+   * care that a key was missing and not where. Since it records no
+   * stack trace and permits no suppressed exceptions or later cause,
+   * sharing it between threads is safe.
+   */
+  public static final KeyNotFoundException SHARED =
+    new KeyNotFoundException("key not found", false);
+
   // +--------------+------------------------------------------------
   // | Constructors |
   // +--------------+
@@ -24,4 +37,13 @@ public class KeyNotFoundException extends Exception {
   public KeyNotFoundException(String message) {
     super(message);
   } // KeyNotFoundException(String)
+
+  /**
+   * Create a new exception with a particular message that records a
+   * stack trace only if writableStackTrace is true. Skipping the stack
+   * trace makes the exception much cheaper to create.
+   */
+  public KeyNotFoundException(String message, boolean writableStackTrace) {
+    super(message, null, writableStackTrace, writableStackTrace);
+  } // KeyNotFoundException(String, boolean)
 } // KeyNotFoundException
\ No newline at end of file
@@ -0,0 +1,90 @@
+package structures;
+
+/**
+ * A hash index that uses plain linear probing: each key goes in the
+ * first empty slot at or after the slot it hashes to. Deleting moves
+ * later entries of the same probe run back into the gap, so no
+ * deleted markers are ever left behind.
+ *
+ * @author Seunghyeon (Hyeon) Kim
+ */
+final class LinearProbeIndex extends HashIndex {
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create an index with length slots (a power of two), each able to
+   * hold positions less than capacity.
+   */
+  LinearProbeIndex(int length, int capacity) {
+    super(length, capacity);
+  } // LinearProbeIndex(int, int)
+
+  /**
+   * Create a copy of other.
+   */
+  LinearProbeIndex(LinearProbeIndex other) {
+    super(other);
+  } // LinearProbeIndex(LinearProbeIndex)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  @Override
+  int find(Object key, int h, Object[] keys, int[] hashes) {
+    // start probing at the slot the key hashes to
+    int slot = h & this.mask;
+    // walk the probe sequence until we reach an empty slot
+    int pos;
+    while ((pos = this.slots.get(slot)) != AssociativeArray.EMPTY) {
+      // comparing the cached hashes first saves most calls to equals
+      if (hashes[pos] == h && AssociativeArray.keyEquals(keys[pos], key)) {
+        return slot;
+      } // if
+      slot = (slot + 1) & this.mask;
+    } // while
+    return -1;
+  } // find(Object, int, Object[], int[])
+
+  @Override
+  void insert(int pos, int[] hashes) {
+    int slot = hashes[pos] & this.mask;
+    // take the first empty slot
+    while (this.slots.get(slot) != AssociativeArray.EMPTY) {
+      slot = (slot + 1) & this.mask;
+    } // while
+    this.slots.set(slot, pos);
+  } // insert(int, int[])
+
+  @Override
+  void delete(int slot, int[] hashes) {
+    int gap = slot;
+    int next = (gap + 1) & this.mask;
+    int pos;
+    while ((pos = this.slots.get(next)) != AssociativeArray.EMPTY) {
+      // the slot that the entry in next would ideally occupy
+      int home = hashes[pos] & this.mask;
+      // the entry may fill the gap only if the gap lies between its
+      // home and where it is now (cyclically)
+      if (((next - home) & this.mask) >= ((next - gap) & this.mask)) {
+        this.slots.set(gap, pos);
+        gap = next;
+      } // if
+      next = (next + 1) & this.mask;
+    } // while
+    this.slots.set(gap, AssociativeArray.EMPTY);
+  } // delete(int, int[])
+
+  @Override
+  int probeLength(int slot, int[] hashes) {
+    int home = hashes[this.slots.get(slot)] & this.mask;
+    return ((slot - home) & this.mask) + 1;
+  } // probeLength(int, int[])
+
+  @Override
+  HashIndex copy() {
+    return new LinearProbeIndex(this);
+  } // copy()
+} // class LinearProbeIndex
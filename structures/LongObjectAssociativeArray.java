@@ -0,0 +1,295 @@
+package structures;
+
+/**
+ * An associative array with long keys and values of type V. It offers
+ * the same operations as AssociativeArray<Long, V>, but stores the keys
+ * directly in a long array, so it never boxes a key and allocates
+ * nothing per pair.
+ *
+ * The pairs live in an open-addressing hash table with linear probing.
+ * The slot of a pair depends on its hash, so toString shows the pairs
+ * in no particular order.
+ *
+ * @author Seunghyeon (Hyeon) Kim
+ */
+public class LongObjectAssociativeArray<V> {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The default number of pairs a new array can hold without growing.
+   */
+  static final int DEFAULT_CAPACITY = 16;
+
+  /**
+   * The key that marks an empty slot. The pair whose key is FREE (if
+   * any) is stored outside the table.
+   */
+  static final long FREE = 0L;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of pairs, including the one whose key is FREE.
+   */
+  int size;
+
+  /**
+   * The keys, indexed by slot. FREE marks an empty slot.
+   */
+  long[] keys;
+
+  /**
+   * The values, at the same slots as their keys.
+   */
+  Object[] values;
+
+  /**
+   * Whether there is a pair whose key is FREE.
+   */
+  boolean hasFreeKey;
+
+  /**
+   * The value associated with FREE, if there is one.
+   */
+  V freeValue;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty associative array.
+   */
+  public LongObjectAssociativeArray() {
+    this(DEFAULT_CAPACITY);
+  } // LongObjectAssociativeArray()
+
+  /**
+   * Create a new, empty associative array that can hold expectedSize
+   * pairs without growing.
+   *
+   * @throws IllegalArgumentException
+   *   when expectedSize is negative.
+   */
+  public LongObjectAssociativeArray(int expectedSize) {
+    if (expectedSize < 0) {
+      throw new IllegalArgumentException("invalid size: " + expectedSize);
+    }
+    int slots = IntIntAssociativeArray.tableLength(expectedSize);
+    this.keys = new long[slots];
+    this.values = new Object[slots];
+    this.size = 0;
+  } // LongObjectAssociativeArray(int)
+
+  // +------------------+--------------------------------------------
+  // | Standard Methods |
+  // +------------------+
+
+  /**
+   * Create a copy of this associative array. The copy shares its
+   * values with the original.
+   */
+  public LongObjectAssociativeArray<V> clone() {
+    LongObjectAssociativeArray<V> temp = new LongObjectAssociativeArray<V>(0);
+    temp.keys = this.keys.clone();
+    temp.values = this.values.clone();
+    temp.size = this.size;
+    temp.hasFreeKey = this.hasFreeKey;
+    temp.freeValue = this.freeValue;
+    return temp;
+  } // clone()
+
+  /**
+   * Convert the array to a string.
+   */
+  public String toString() {
+    StringBuilder ret = new StringBuilder("{ ");
+    int seen = 0;
+    if (this.hasFreeKey) {
+      ret.append(FREE).append(": ").append(this.freeValue);
+      seen++;
+      ret.append((seen != this.size) ? ", " : " ");
+    } // if
+    for (int slot = 0; slot < this.keys.length; slot++) {
+      if (this.keys[slot] != FREE) {
+        ret.append(this.keys[slot]).append(": ").append(this.values[slot]);
+        seen++;
+        ret.append((seen != this.size) ? ", " : " ");
+      } // if
+    } // for
+    return ret.append("}").toString();
+  } // toString()
+
+  // +----------------+----------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  /**
+   * Set the value associated with key to value. Future calls to
+   * get(key) will return value.
+   */
+  public void set(long key, V value) {
+    if (key == FREE) {
+      if (!this.hasFreeKey) {
+        this.hasFreeKey = true;
+        this.size++;
+      } // if
+      this.freeValue = value;
+      return;
+    } // if
+    int mask = this.keys.length - 1;
+    int slot = mix(key) & mask;
+    while (this.keys[slot] != FREE) {
+      if (this.keys[slot] == key) {
+        this.values[slot] = value;
+        return;
+      } // if
+      slot = (slot + 1) & mask;
+    } // while
+    this.keys[slot] = key;
+    this.values[slot] = value;
+    this.size++;
+    // keep the table at most half full
+    if (2 * this.size > this.keys.length) {
+      this.rehash(2 * this.keys.length);
+    } // if
+  } // set(long, V)
+
+  /**
+   * Get the value associated with key.
+   *
+   * @throws KeyNotFoundException
+   *   when the key does not appear in the associative array.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public V get(long key) throws KeyNotFoundException {
+    if (key == FREE) {
+      if (this.hasFreeKey) {
+        return this.freeValue;
+      } // if
+      throw new KeyNotFoundException();
+    } // if
+    int slot = this.slotOf(key);
+    if (slot < 0) {
+      throw new KeyNotFoundException();
+    } // if
+    return (V) this.values[slot];
+  } // get(long)
+
+  /**
+   * Get the value associated with key, or defaultValue when the key
+   * does not appear in the associative array.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public V getOrDefault(long key, V defaultValue) {
+    if (key == FREE) {
+      return this.hasFreeKey ? this.freeValue : defaultValue;
+    } // if
+    int slot = this.slotOf(key);
+    return (slot < 0) ? defaultValue : (V) this.values[slot];
+  } // getOrDefault(long, V)
+
+  /**
+   * Determine if key appears in the associative array.
+   */
+  public boolean hasKey(long key) {
+    return (key == FREE) ? this.hasFreeKey : (this.slotOf(key) >= 0);
+  } // hasKey(long)
+
+  /**
+   * Remove the key/value pair associated with a key. Future calls
+   * to get(key) will throw an exception. If the key does not appear
+   * in the associative array, does nothing.
+   */
+  public void remove(long key) {
+    if (key == FREE) {
+      if (this.hasFreeKey) {
+        this.hasFreeKey = false;
+        this.freeValue = null;
+        this.size--;
+      } // if
+      return;
+    } // if
+    int slot = this.slotOf(key);
+    if (slot < 0) {
+      return;
+    } // if
+    // move later pairs of the same probe run back into the gap
+    int mask = this.keys.length - 1;
+    int gap = slot;
+    int next = (gap + 1) & mask;
+    while (this.keys[next] != FREE) {
+      int home = mix(this.keys[next]) & mask;
+      if (((next - home) & mask) >= ((next - gap) & mask)) {
+        this.keys[gap] = this.keys[next];
+        this.values[gap] = this.values[next];
+        gap = next;
+      } // if
+      next = (next + 1) & mask;
+    } // while
+    this.keys[gap] = FREE;
+    this.values[gap] = null;
+    this.size--;
+  } // remove(long)
+
+  /**
+   * Determine how many values are in the associative array.
+   */
+  public int size() {
+    return this.size;
+  } // size()
+
+  // +-----------------+---------------------------------------------
+  // | Private Methods |
+  // +-----------------+
+
+  /**
+   * Find the slot that holds key (which is not FREE), or -1 if there
+   * is no such slot.
+   */
+  private int slotOf(long key) {
+    int mask = this.keys.length - 1;
+    int slot = mix(key) & mask;
+    while (this.keys[slot] != FREE) {
+      if (this.keys[slot] == key) {
+        return slot;
+      } // if
+      slot = (slot + 1) & mask;
+    } // while
+    return -1;
+  } // slotOf(long)
+
+  /**
+   * Move all of the pairs into a table with the given number of slots.
+   */
+  private void rehash(int slots) {
+    long[] oldKeys = this.keys;
+    Object[] oldValues = this.values;
+    this.keys = new long[slots];
+    this.values = new Object[slots];
+    int mask = slots - 1;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != FREE) {
+        int slot = mix(oldKeys[i]) & mask;
+        while (this.keys[slot] != FREE) {
+          slot = (slot + 1) & mask;
+        } // while
+        this.keys[slot] = oldKeys[i];
+        this.values[slot] = oldValues[i];
+      } // if
+    } // for
+  } // rehash(int)
+
+  /**
+   * Scramble the bits of a key, so that nearby keys land in distant
+   * slots.
+   */
+  static int mix(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  } // mix(long)
+} // class LongObjectAssociativeArray
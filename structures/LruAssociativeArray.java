@@ -0,0 +1,479 @@
+package structures;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * An associative array that holds at most a fixed number of pairs, for
+ * use as a cache. When it is full, adding a pair evicts the least
+ * recently used one, and tells the eviction listener about it. Looking
+ * a key up with get, getOrDefault, or computeIfAbsent counts as a use,
+ * and also counts as a hit or a miss.
+ *
+ * The pairs live in arrays of entries that are linked, in order of
+ * use, into a doubly-linked list, and an ObjectIntAssociativeArray maps
+ * each key to its entry. Every operation takes constant time, and
+ * nothing is allocated per pair once the cache is full.
+ *
+ * toString shows the pairs from least to most recently used.
+ *
+ * Subclasses may keep the entries in more than one list, to evict by
+ * some other policy than recency alone (see TinyLfuAssociativeArray).
+ *
+ * @author Seunghyeon (Hyeon) Kim
+ */
+public class LruAssociativeArray<K, V> {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The link that marks the end of a list.
+   */
+  static final int NIL = -1;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The maximum number of pairs.
+   */
+  final int capacity;
+
+  /**
+   * The entry of each key.
+   */
+  ObjectIntAssociativeArray<K> index;
+
+  /**
+   * The keys, indexed by entry.
+   */
+  Object[] keys;
+
+  /**
+   * The values, indexed by entry.
+   */
+  Object[] values;
+
+  /**
+   * The entry used just before each entry, or NIL.
+   */
+  int[] prev;
+
+  /**
+   * The entry used just after each entry, or NIL. For entries not in
+   * use, the next free entry.
+   */
+  int[] next;
+
+  /**
+   * The list that each entry is in.
+   */
+  byte[] lists;
+
+  /**
+   * The least recently used entry of each list, or NIL when the list
+   * is empty.
+   */
+  int[] heads;
+
+  /**
+   * The most recently used entry of each list, or NIL when the list
+   * is empty.
+   */
+  int[] tails;
+
+  /**
+   * The number of entries in each list.
+   */
+  int[] lengths;
+
+  /**
+   * The first free entry below used, or NIL.
+   */
+  int free;
+
+  /**
+   * The number of entries that have ever been in use.
+   */
+  int used;
+
+  /**
+   * The number of pairs.
+   */
+  int size;
+
+  /**
+   * Who to tell about evicted pairs, if anyone.
+   */
+  final BiConsumer<? super K, ? super V> listener;
+
+  /**
+   * The number of lookups that found their key.
+   */
+  long hits;
+
+  /**
+   * The number of lookups that did not find their key.
+   */
+  long misses;
+
+  /**
+   * The number of pairs evicted to make room for others.
+   */
+  long evictions;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty associative array that holds at most capacity
+   * pairs.
+   *
+   * @throws IllegalArgumentException
+   *   when capacity is not positive.
+   */
+  public LruAssociativeArray(int capacity) {
+    this(capacity, null);
+  } // LruAssociativeArray(int)
+
+  /**
+   * Create a new, empty associative array that holds at most capacity
+   * pairs, and calls listener with the key and value of each pair that
+   * it evicts. (Pairs removed with remove are not evicted.)
+   *
+   * @throws IllegalArgumentException
+   *   when capacity is not positive.
+   */
+  public LruAssociativeArray(int capacity,
+      BiConsumer<? super K, ? super V> listener) {
+    this(capacity, listener, 1);
+  } // LruAssociativeArray(int, BiConsumer)
+
+  /**
+   * Create a new, empty associative array that holds at most capacity
+   * pairs in listCount lists, and calls listener about evictions.
+   *
+   * @throws IllegalArgumentException
+   *   when capacity is not positive.
+   */
+  LruAssociativeArray(int capacity, BiConsumer<? super K, ? super V> listener,
+      int listCount) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("invalid capacity: " + capacity);
+    } // if
+    this.capacity = capacity;
+    this.listener = listener;
+    this.index = new ObjectIntAssociativeArray<K>(capacity);
+    this.keys = new Object[capacity];
+    this.values = new Object[capacity];
+    this.prev = new int[capacity];
+    this.next = new int[capacity];
+    this.lists = new byte[capacity];
+    this.heads = new int[listCount];
+    this.tails = new int[listCount];
+    this.lengths = new int[listCount];
+    Arrays.fill(this.heads, NIL);
+    Arrays.fill(this.tails, NIL);
+    this.free = NIL;
+  } // LruAssociativeArray(int, BiConsumer, int)
+
+  // +------------------+--------------------------------------------
+  // | Standard Methods |
+  // +------------------+
+
+  /**
+   * Create a copy of this associative array, with the same order of
+   * use, listener, and counters.
+   */
+  public LruAssociativeArray<K, V> clone() {
+    LruAssociativeArray<K, V> temp =
+      new LruAssociativeArray<K, V>(this.capacity, this.listener);
+    this.copyInto(temp);
+    return temp;
+  } // clone()
+
+  /**
+   * Copy the pairs, lists, and counters of this array into temp, which
+   * has the same capacity and number of lists.
+   */
+  void copyInto(LruAssociativeArray<K, V> temp) {
+    temp.index = this.index.clone();
+    temp.keys = this.keys.clone();
+    temp.values = this.values.clone();
+    temp.prev = this.prev.clone();
+    temp.next = this.next.clone();
+    temp.lists = this.lists.clone();
+    temp.heads = this.heads.clone();
+    temp.tails = this.tails.clone();
+    temp.lengths = this.lengths.clone();
+    temp.free = this.free;
+    temp.used = this.used;
+    temp.size = this.size;
+    temp.hits = this.hits;
+    temp.misses = this.misses;
+    temp.evictions = this.evictions;
+  } // copyInto(LruAssociativeArray)
+
+  /**
+   * Convert the array to a string.
+   */
+  public String toString() {
+    StringBuilder ret = new StringBuilder("{ ");
+    int seen = 0;
+    for (int list = 0; list < this.heads.length; list++) {
+      for (int e = this.heads[list]; e != NIL; e = this.next[e]) {
+        ret.append(this.keys[e]).append(": ").append(this.values[e]);
+        seen++;
+        ret.append((seen != this.size) ? ", " : " ");
+      } // for
+    } // for
+    return ret.append("}").toString();
+  } // toString()
+
+  // +----------------+----------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  /**
+   * Set the value associated with key to value, and make key the most
+   * recently used. If that adds a pair to a full array, first evict
+   * the least recently used pair.
+   */
+  public void set(K key, V value) {
+    int e = this.index.getOrDefault(key, NIL);
+    if (e != NIL) {
+      this.values[e] = value;
+      this.touch(e);
+      return;
+    } // if
+    this.add(key, value);
+  } // set(K, V)
+
+  /**
+   * Get the value associated with key, and make key the most recently
+   * used.
+   *
+   * @throws KeyNotFoundException
+   *   when the key does not appear in the associative array.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public V get(K key) throws KeyNotFoundException {
+    int e = this.lookup(key);
+    if (e == NIL) {
+      throw new KeyNotFoundException();
+    } // if
+    return (V) this.values[e];
+  } // get(K)
+
+  /**
+   * Get the value associated with key, and make key the most recently
+   * used, or get defaultValue when the key does not appear in the
+   * associative array.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public V getOrDefault(K key, V defaultValue) {
+    int e = this.lookup(key);
+    return (e == NIL) ? defaultValue : (V) this.values[e];
+  } // getOrDefault(K, V)
+
+  /**
+   * Get the value associated with key. If there is none, compute one
+   * with fun and set key to it (evicting a pair if need be). Either
+   * way, key becomes the most recently used.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public V computeIfAbsent(K key, Function<? super K, ? extends V> fun) {
+    int e = this.lookup(key);
+    if (e != NIL) {
+      return (V) this.values[e];
+    } // if
+    V value = fun.apply(key);
+    this.add(key, value);
+    return value;
+  } // computeIfAbsent(K, Function)
+
+  /**
+   * Determine if key appears in the associative array. This does not
+   * count as a use of key, nor as a hit or a miss.
+   */
+  public boolean hasKey(K key) {
+    return this.index.hasKey(key);
+  } // hasKey(K)
+
+  /**
+   * Remove the key/value pair associated with key. The listener does
+   * not hear about it.
+   */
+  public void remove(K key) {
+    int e = this.index.getOrDefault(key, NIL);
+    if (e != NIL) {
+      this.index.remove(key);
+      this.release(e);
+    } // if
+  } // remove(K)
+
+  /**
+   * Determine how many pairs are in the associative array.
+   */
+  public int size() {
+    return this.size;
+  } // size()
+
+  /**
+   * Determine the maximum number of pairs.
+   */
+  public int capacity() {
+    return this.capacity;
+  } // capacity()
+
+  /**
+   * Determine how many lookups found their key.
+   */
+  public long hits() {
+    return this.hits;
+  } // hits()
+
+  /**
+   * Determine how many lookups did not find their key.
+   */
+  public long misses() {
+    return this.misses;
+  } // misses()
+
+  /**
+   * Determine how many pairs were evicted to make room for others.
+   */
+  public long evictions() {
+    return this.evictions;
+  } // evictions()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Find the entry of key, count a hit or a miss, and on a hit make
+   * the entry the most recently used. Returns NIL on a miss.
+   */
+  int lookup(K key) {
+    int e = this.index.getOrDefault(key, NIL);
+    if (e == NIL) {
+      this.misses++;
+    } else {
+      this.hits++;
+      this.touch(e);
+    } // if/else
+    return e;
+  } // lookup(K)
+
+  /**
+   * Add a pair whose key is not in the array, evicting the least
+   * recently used pair if the array is full.
+   */
+  void add(K key, V value) {
+    if (this.size == this.capacity) {
+      this.evict(this.heads[0]);
+    } // if
+    this.linkLast(this.allocate(key, value), 0);
+  } // add(K, V)
+
+  /**
+   * Remove entry e to make room for another, and tell the listener.
+   */
+  @SuppressWarnings({ "unchecked" })
+  void evict(int e) {
+    K key = (K) this.keys[e];
+    V value = (V) this.values[e];
+    this.index.remove(key);
+    this.release(e);
+    this.evictions++;
+    if (this.listener != null) {
+      this.listener.accept(key, value);
+    } // if
+  } // evict(int)
+
+  /**
+   * Put a pair whose key is not in the array into a free entry, which
+   * is not yet in any list, and return that entry. The array must not
+   * be full.
+   */
+  int allocate(K key, V value) {
+    int e;
+    if (this.free != NIL) {
+      e = this.free;
+      this.free = this.next[e];
+    } else {
+      e = this.used++;
+    } // if/else
+    this.keys[e] = key;
+    this.values[e] = value;
+    this.index.set(key, e);
+    this.size++;
+    return e;
+  } // allocate(K, V)
+
+  /**
+   * Unlink entry e and put it on the free list.
+   */
+  void release(int e) {
+    this.unlink(e);
+    this.keys[e] = null;
+    this.values[e] = null;
+    this.next[e] = this.free;
+    this.free = e;
+    this.size--;
+  } // release(int)
+
+  /**
+   * Make entry e the most recently used of its list.
+   */
+  void touch(int e) {
+    int list = this.lists[e];
+    if (e != this.tails[list]) {
+      this.unlink(e);
+      this.linkLast(e, list);
+    } // if
+  } // touch(int)
+
+  /**
+   * Take entry e out of its list.
+   */
+  void unlink(int e) {
+    int list = this.lists[e];
+    int p = this.prev[e];
+    int n = this.next[e];
+    if (p == NIL) {
+      this.heads[list] = n;
+    } else {
+      this.next[p] = n;
+    } // if/else
+    if (n == NIL) {
+      this.tails[list] = p;
+    } else {
+      this.prev[n] = p;
+    } // if/else
+    this.lengths[list]--;
+  } // unlink(int)
+
+  /**
+   * Put entry e, which is in no list, at the most recently used end of
+   * list.
+   */
+  void linkLast(int e, int list) {
+    int tail = this.tails[list];
+    this.lists[e] = (byte) list;
+    this.prev[e] = tail;
+    this.next[e] = NIL;
+    if (tail == NIL) {
+      this.heads[list] = e;
+    } else {
+      this.next[tail] = e;
+    } // if/else
+    this.tails[list] = e;
+    this.lengths[list]++;
+  } // linkLast(int, int)
+} // class LruAssociativeArray
@@ -0,0 +1,277 @@
+package structures;
+
+/**
+ * An associative array with keys of type K and int values. It offers
+ * the same operations as AssociativeArray<K, Integer>, but stores the
+ * values directly in an int array, so it never boxes a value and
+ * allocates nothing per pair.
+ *
+ * The pairs live in an open-addressing hash table with linear probing.
+ * The slot of a pair depends on its hash, so toString shows the pairs
+ * in no particular order.
+ *
+ * @author Seunghyeon (Hyeon) Kim
+ */
+public class ObjectIntAssociativeArray<K> {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The default number of pairs a new array can hold without growing.
+   */
+  static final int DEFAULT_CAPACITY = 16;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of pairs, including the one whose key is null.
+   */
+  int size;
+
+  /**
+   * The keys, indexed by slot. null marks an empty slot; the pair
+   * whose key is null (if any) is stored outside the table.
+   */
+  Object[] keys;
+
+  /**
+   * The values, at the same slots as their keys.
+   */
+  int[] values;
+
+  /**
+   * Whether there is a pair whose key is null.
+   */
+  boolean hasNullKey;
+
+  /**
+   * The value associated with null, if there is one.
+   */
+  int nullValue;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty associative array.
+   */
+  public ObjectIntAssociativeArray() {
+    this(DEFAULT_CAPACITY);
+  } // ObjectIntAssociativeArray()
+
+  /**
+   * Create a new, empty associative array that can hold expectedSize
+   * pairs without growing.
+   *
+   * @throws IllegalArgumentException
+   *   when expectedSize is negative.
+   */
+  public ObjectIntAssociativeArray(int expectedSize) {
+    if (expectedSize < 0) {
+      throw new IllegalArgumentException("invalid size: " + expectedSize);
+    }
+    int slots = IntIntAssociativeArray.tableLength(expectedSize);
+    this.keys = new Object[slots];
+    this.values = new int[slots];
+    this.size = 0;
+  } // ObjectIntAssociativeArray(int)
+
+  // +------------------+--------------------------------------------
+  // | Standard Methods |
+  // +------------------+
+
+  /**
+   * Create a copy of this associative array. The copy shares its
+   * keys with the original.
+   */
+  public ObjectIntAssociativeArray<K> clone() {
+    ObjectIntAssociativeArray<K> temp = new ObjectIntAssociativeArray<K>(0);
+    temp.keys = this.keys.clone();
+    temp.values = this.values.clone();
+    temp.size = this.size;
+    temp.hasNullKey = this.hasNullKey;
+    temp.nullValue = this.nullValue;
+    return temp;
+  } // clone()
+
+  /**
+   * Convert the array to a string.
+   */
+  public String toString() {
+    StringBuilder ret = new StringBuilder("{ ");
+    int seen = 0;
+    if (this.hasNullKey) {
+      ret.append("null: ").append(this.nullValue);
+      seen++;
+      ret.append((seen != this.size) ? ", " : " ");
+    } // if
+    for (int slot = 0; slot < this.keys.length; slot++) {
+      if (this.keys[slot] != null) {
+        ret.append(this.keys[slot]).append(": ").append(this.values[slot]);
+        seen++;
+        ret.append((seen != this.size) ? ", " : " ");
+      } // if
+    } // for
+    return ret.append("}").toString();
+  } // toString()
+
+  // +----------------+----------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  /**
+   * Set the value associated with key to value. Future calls to
+   * get(key) will return value.
+   */
+  public void set(K key, int value) {
+    if (key == null) {
+      if (!this.hasNullKey) {
+        this.hasNullKey = true;
+        this.size++;
+      } // if
+      this.nullValue = value;
+      return;
+    } // if
+    int mask = this.keys.length - 1;
+    int slot = AssociativeArray.hash(key) & mask;
+    while (this.keys[slot] != null) {
+      if (this.keys[slot].equals(key)) {
+        this.values[slot] = value;
+        return;
+      } // if
+      slot = (slot + 1) & mask;
+    } // while
+    this.keys[slot] = key;
+    this.values[slot] = value;
+    this.size++;
+    // keep the table at most half full
+    if (2 * this.size > this.keys.length) {
+      this.rehash(2 * this.keys.length);
+    } // if
+  } // set(K, int)
+
+  /**
+   * Get the value associated with key.
+   *
+   * @throws KeyNotFoundException
+   *   when the key does not appear in the associative array.
+   */
+  public int get(K key) throws KeyNotFoundException {
+    if (key == null) {
+      if (this.hasNullKey) {
+        return this.nullValue;
+      } // if
+      throw new KeyNotFoundException();
+    } // if
+    int slot = this.slotOf(key);
+    if (slot < 0) {
+      throw new KeyNotFoundException();
+    } // if
+    return this.values[slot];
+  } // get(K)
+
+  /**
+   * Get the value associated with key, or defaultValue when the key
+   * does not appear in the associative array.
+   */
+  public int getOrDefault(K key, int defaultValue) {
+    if (key == null) {
+      return this.hasNullKey ? this.nullValue : defaultValue;
+    } // if
+    int slot = this.slotOf(key);
+    return (slot < 0) ? defaultValue : this.values[slot];
+  } // getOrDefault(K, int)
+
+  /**
+   * Determine if key appears in the associative array.
+   */
+  public boolean hasKey(K key) {
+    return (key == null) ? this.hasNullKey : (this.slotOf(key) >= 0);
+  } // hasKey(K)
+
+  /**
+   * Remove the key/value pair associated with a key. Future calls
+   * to get(key) will throw an exception. If the key does not appear
+   * in the associative array, does nothing.
+   */
+  public void remove(K key) {
+    if (key == null) {
+      if (this.hasNullKey) {
+        this.hasNullKey = false;
+        this.size--;
+      } // if
+      return;
+    } // if
+    int slot = this.slotOf(key);
+    if (slot < 0) {
+      return;
+    } // if
+    // move later pairs of the same probe run back into the gap
+    int mask = this.keys.length - 1;
+    int gap = slot;
+    int next = (gap + 1) & mask;
+    while (this.keys[next] != null) {
+      int home = AssociativeArray.hash(this.keys[next]) & mask;
+      if (((next - home) & mask) >= ((next - gap) & mask)) {
+        this.keys[gap] = this.keys[next];
+        this.values[gap] = this.values[next];
+        gap = next;
+      } // if
+      next = (next + 1) & mask;
+    } // while
+    this.keys[gap] = null;
+    this.size--;
+  } // remove(K)
+
+  /**
+   * Determine how many values are in the associative array.
+   */
+  public int size() {
+    return this.size;
+  } // size()
+
+  // +-----------------+---------------------------------------------
+  // | Private Methods |
+  // +-----------------+
+
+  /**
+   * Find the slot that holds key (which is not null), or -1 if there
+   * is no such slot.
+   */
+  private int slotOf(K key) {
+    int mask = this.keys.length - 1;
+    int slot = AssociativeArray.hash(key) & mask;
+    while (this.keys[slot] != null) {
+      if (this.keys[slot].equals(key)) {
+        return slot;
+      } // if
+      slot = (slot + 1) & mask;
+    } // while
+    return -1;
+  } // slotOf(K)
+
+  /**
+   * Move all of the pairs into a table with the given number of slots.
+   */
+  private void rehash(int slots) {
+    Object[] oldKeys = this.keys;
+    int[] oldValues = this.values;
+    this.keys = new Object[slots];
+    this.values = new int[slots];
+    int mask = slots - 1;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != null) {
+        int slot = AssociativeArray.hash(oldKeys[i]) & mask;
+        while (this.keys[slot] != null) {
+          slot = (slot + 1) & mask;
+        } // while
+        this.keys[slot] = oldKeys[i];
+        this.values[slot] = oldValues[i];
+      } // if
+    } // for
+  } // rehash(int)
+} // class ObjectIntAssociativeArray
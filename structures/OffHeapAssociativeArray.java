@@ -0,0 +1,678 @@
+package structures;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * An associative array that keeps its keys, values, and hash index in
+ * direct byte buffers, outside the Java heap. However many pairs it
+ * holds, the garbage collector only ever sees a handful of buffer
+ * objects, so big tables do not lengthen collection pauses.
+ *
+ * Keys and values are turned into bytes by the serializers given to
+ * the constructor. Keys are hashed and compared by their serialized
+ * bytes, so the key serializer must write equal keys as equal bytes.
+ * Every get deserializes a fresh copy of the value.
+ *
+ * The array must be closed when it is no longer needed. Closing hands
+ * the memory of every buffer straight back to the system, without
+ * waiting for the garbage collector, after which the array may not be
+ * used. Buffers that the array outgrows are freed the same way. (On a
+ * JVM that does not offer sun.misc.Unsafe.invokeCleaner, or when the
+ * jdk.unsupported module is not resolved, closing can only drop the
+ * buffers, and their memory goes back when the garbage collector
+ * clears them.)
+ *
+ * Each pair is stored as a record: the key length, the value length,
+ * the key bytes, and the value bytes, where a length of -1 stands for
+ * null. Records are appended to fixed-size chunks. Removing or
+ * replacing a pair leaves its old record behind as garbage, which is
+ * reclaimed once it outweighs the live records.
+ *
+ * @author Seunghyeon (Hyeon) Kim
+ */
+public class OffHeapAssociativeArray<K, V> implements AutoCloseable {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The default number of pairs a new array can hold without growing
+   * its index.
+   */
+  static final int DEFAULT_CAPACITY = 16;
+
+  /**
+   * The default size of each chunk of records, in bytes.
+   */
+  static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+  /**
+   * The number of bytes in each slot of the index: a four-byte hash,
+   * four bytes of padding, and an eight-byte reference to a record.
+   */
+  static final int SLOT_BYTES = 16;
+
+  /**
+   * The number of bytes in the header of each record.
+   */
+  static final int HEADER_BYTES = 8;
+
+  /**
+   * The length we record for null.
+   */
+  static final int NULL_LENGTH = -1;
+
+  /**
+   * The most slots the index can have, since a buffer holds at most
+   * Integer.MAX_VALUE bytes.
+   */
+  static final int MAX_SLOTS = 1 << 26;
+
+  /**
+   * A handle on Unsafe.invokeCleaner, which frees the memory of a
+   * direct buffer at once, or null if this JVM does not have it.
+   */
+  static final MethodHandle INVOKE_CLEANER = findCleaner();
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * How we turn keys into bytes.
+   */
+  final Serializer<K> keySerializer;
+
+  /**
+   * How we turn values into bytes.
+   */
+  final Serializer<V> valueSerializer;
+
+  /**
+   * The size of each chunk of records.
+   */
+  final int chunkSize;
+
+  /**
+   * The number of key/value pairs.
+   */
+  int size;
+
+  /**
+   * The chunks of records. A reference to a record is its chunk number
+   * times 2^32 plus its position within the chunk, plus one (so that 0
+   * can mean "no record").
+   */
+  ArrayList<ByteBuffer> chunks;
+
+  /**
+   * Where the next record goes in the last chunk.
+   */
+  int tail;
+
+  /**
+   * The number of bytes taken up by live records.
+   */
+  long liveBytes;
+
+  /**
+   * The number of bytes taken up by records of removed or replaced
+   * pairs.
+   */
+  long garbageBytes;
+
+  /**
+   * The hash index, with SLOT_BYTES per slot and a power-of-two number
+   * of slots, which uses linear probing. A slot whose reference is 0
+   * is empty.
+   */
+  ByteBuffer index;
+
+  /**
+   * The number of slots in the index.
+   */
+  int slots;
+
+  /**
+   * A heap buffer for serializing the key we are looking for.
+   */
+  ByteBuffer scratch;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty associative array that uses the given
+   * serializers for its keys and values.
+   */
+  public OffHeapAssociativeArray(Serializer<K> keySerializer,
+      Serializer<V> valueSerializer) {
+    this(keySerializer, valueSerializer, DEFAULT_CAPACITY, DEFAULT_CHUNK_SIZE);
+  } // OffHeapAssociativeArray(Serializer, Serializer)
+
+  /**
+   * Create a new, empty associative array that uses the given
+   * serializers for its keys and values, can hold expectedSize pairs
+   * without growing its index, and stores records in chunks of
+   * chunkSize bytes.
+   *
+   * @throws IllegalArgumentException
+   *   when expectedSize is negative or chunkSize is too small to hold
+   *   a record.
+   */
+  public OffHeapAssociativeArray(Serializer<K> keySerializer,
+      Serializer<V> valueSerializer, int expectedSize, int chunkSize) {
+    if (expectedSize < 0) {
+      throw new IllegalArgumentException("invalid size: " + expectedSize);
+    } // if
+    if (chunkSize < HEADER_BYTES) {
+      throw new IllegalArgumentException("invalid chunk size: " + chunkSize);
+    } // if
+    this.keySerializer = keySerializer;
+    this.valueSerializer = valueSerializer;
+    this.chunkSize = chunkSize;
+    this.chunks = new ArrayList<ByteBuffer>();
+    this.tail = chunkSize;
+    this.slots = IntIntAssociativeArray.tableLength(expectedSize);
+    if (this.slots > MAX_SLOTS) {
+      throw new OutOfMemoryError("associative array too large");
+    } // if
+    this.index = ByteBuffer.allocateDirect(this.slots * SLOT_BYTES);
+    this.scratch = ByteBuffer.allocate(64);
+    this.size = 0;
+  } // OffHeapAssociativeArray(Serializer, Serializer, int, int)
+
+  // +------------------+--------------------------------------------
+  // | Standard Methods |
+  // +------------------+
+
+  /**
+   * Create a copy of this associative array, with its own buffers.
+   */
+  public OffHeapAssociativeArray<K, V> clone() {
+    this.checkOpen();
+    OffHeapAssociativeArray<K, V> temp = new OffHeapAssociativeArray<K, V>(
+      this.keySerializer, this.valueSerializer, this.size, this.chunkSize);
+    for (int slot = 0; slot < this.slots; slot++) {
+      long ref = this.refAt(slot);
+      if (ref != 0) {
+        temp.set(this.readKey(ref), this.readValue(ref));
+      } // if
+    } // for
+    return temp;
+  } // clone()
+
+  /**
+   * Convert the array to a string. The pairs appear in no particular
+   * order.
+   */
+  public String toString() {
+    this.checkOpen();
+    StringBuilder ret = new StringBuilder("{ ");
+    int seen = 0;
+    for (int slot = 0; slot < this.slots; slot++) {
+      long ref = this.refAt(slot);
+      if (ref != 0) {
+        ret.append(this.readKey(ref)).append(": ").append(this.readValue(ref));
+        seen++;
+        ret.append((seen != this.size) ? ", " : " ");
+      } // if
+    } // for
+    return ret.append("}").toString();
+  } // toString()
+
+  // +----------------+----------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  /**
+   * Set the value associated with key to value. Future calls to
+   * get(key) will return value.
+   */
+  public void set(K key, V value) {
+    this.checkOpen();
+    int keyLength = this.serializeKey(key);
+    int h = this.hashScratch(keyLength);
+    int slot = this.slotOf(keyLength, h);
+    int valueLength = (value == null) ? NULL_LENGTH
+                                      : this.valueSerializer.sizeOf(value);
+    if (slot >= 0) {
+      long ref = this.refAt(slot);
+      ByteBuffer chunk = this.chunkOf(ref);
+      int pos = positionOf(ref);
+      int oldLength = chunk.getInt(pos + 4);
+      if (oldLength == valueLength) {
+        // the new value fits exactly where the old one was
+        if (value != null) {
+          ByteBuffer view = chunk.duplicate();
+          view.position(pos + HEADER_BYTES + Math.max(keyLength, 0));
+          this.valueSerializer.write(value, view);
+        } // if
+        return;
+      } // if
+      // otherwise, the old record becomes garbage
+      long oldBytes = recordBytes(keyLength, oldLength);
+      this.liveBytes -= oldBytes;
+      this.garbageBytes += oldBytes;
+      this.index.putLong(slot * SLOT_BYTES + 8,
+        this.append(keyLength, value, valueLength));
+      this.maybeCompact();
+      return;
+    } // if
+    long ref = this.append(keyLength, value, valueLength);
+    this.size++;
+    if (2 * this.size > this.slots) {
+      this.rehash(2 * this.slots);
+    } // if
+    this.indexInsert(h, ref);
+  } // set(K,V)
+
+  /**
+   * Get the value associated with key.
+   *
+   * @throws KeyNotFoundException
+   *   when the key does not appear in the associative array.
+   */
+  public V get(K key) throws KeyNotFoundException {
+    this.checkOpen();
+    int keyLength = this.serializeKey(key);
+    int slot = this.slotOf(keyLength, this.hashScratch(keyLength));
+    if (slot < 0) {
+      throw new KeyNotFoundException();
+    } // if
+    return this.readValue(this.refAt(slot));
+  } // get(K)
+
+  /**
+   * Get the value associated with key, or defaultValue when the key
+   * does not appear in the associative array.
+   */
+  public V getOrDefault(K key, V defaultValue) {
+    this.checkOpen();
+    int keyLength = this.serializeKey(key);
+    int slot = this.slotOf(keyLength, this.hashScratch(keyLength));
+    return (slot < 0) ? defaultValue : this.readValue(this.refAt(slot));
+  } // getOrDefault(K, V)
+
+  /**
+   * Determine if key appears in the associative array.
+   */
+  public boolean hasKey(K key) {
+    this.checkOpen();
+    int keyLength = this.serializeKey(key);
+    return this.slotOf(keyLength, this.hashScratch(keyLength)) >= 0;
+  } // hasKey(K)
+
+  /**
+   * Remove the key/value pair associated with a key. Future calls
+   * to get(key) will throw an exception. If the key does not appear
+   * in the associative array, does nothing.
+   */
+  public void remove(K key) {
+    this.checkOpen();
+    int keyLength = this.serializeKey(key);
+    int slot = this.slotOf(keyLength, this.hashScratch(keyLength));
+    if (slot < 0) {
+      return;
+    } // if
+    long ref = this.refAt(slot);
+    long bytes = recordBytes(keyLength, this.chunkOf(ref).getInt(positionOf(ref) + 4));
+    this.liveBytes -= bytes;
+    this.garbageBytes += bytes;
+    this.indexDelete(slot);
+    this.size--;
+    this.maybeCompact();
+  } // remove(K)
+
+  /**
+   * Determine how many values are in the associative array.
+   */
+  public int size() {
+    this.checkOpen();
+    return this.size;
+  } // size()
+
+  /**
+   * Release the buffers that hold the pairs. After closing, every
+   * other method throws an IllegalStateException. Closing twice does
+   * nothing.
+   */
+  public void close() {
+    if (this.index == null) {
+      return;
+    } // if
+    free(this.index);
+    for (ByteBuffer chunk : this.chunks) {
+      free(chunk);
+    } // for
+    this.chunks = null;
+    this.index = null;
+    this.scratch = null;
+    this.size = 0;
+  } // close()
+
+  // +-----------------+---------------------------------------------
+  // | Private Methods |
+  // +-----------------+
+
+  /**
+   * Make sure that the array has not been closed.
+   */
+  private void checkOpen() {
+    if (this.index == null) {
+      throw new IllegalStateException("associative array is closed");
+    } // if
+  } // checkOpen()
+
+  /**
+   * Serialize key into the scratch buffer and return its length (or
+   * NULL_LENGTH for null).
+   */
+  private int serializeKey(K key) {
+    if (key == null) {
+      return NULL_LENGTH;
+    } // if
+    int length = this.keySerializer.sizeOf(key);
+    if (this.scratch.capacity() < length) {
+      this.scratch = ByteBuffer.allocate(Math.max(length,
+        2 * this.scratch.capacity()));
+    } // if
+    this.scratch.clear();
+    this.keySerializer.write(key, this.scratch);
+    return length;
+  } // serializeKey(K)
+
+  /**
+   * Hash the first length bytes of the scratch buffer.
+   */
+  private int hashScratch(int length) {
+    int h = length;
+    for (int i = 0; i < length; i++) {
+      h = 31 * h + this.scratch.get(i);
+    } // for
+    h *= 0x9E3779B9;
+    return h ^ (h >>> 16);
+  } // hashScratch(int)
+
+  /**
+   * Find the slot of the index whose record has the key in the
+   * scratch buffer, or -1 if there is no such slot.
+   */
+  private int slotOf(int keyLength, int h) {
+    int mask = this.slots - 1;
+    int slot = h & mask;
+    long ref;
+    while ((ref = this.refAt(slot)) != 0) {
+      if (this.index.getInt(slot * SLOT_BYTES) == h
+          && this.keyMatches(ref, keyLength)) {
+        return slot;
+      } // if
+      slot = (slot + 1) & mask;
+    } // while
+    return -1;
+  } // slotOf(int, int)
+
+  /**
+   * Determine whether the record at ref has the key in the scratch
+   * buffer, comparing eight bytes at a time where we can.
+   */
+  private boolean keyMatches(long ref, int keyLength) {
+    ByteBuffer chunk = this.chunkOf(ref);
+    int pos = positionOf(ref);
+    if (chunk.getInt(pos) != keyLength) {
+      return false;
+    } // if
+    int start = pos + HEADER_BYTES;
+    int i = 0;
+    for (; i + Long.BYTES <= keyLength; i += Long.BYTES) {
+      if (chunk.getLong(start + i) != this.scratch.getLong(i)) {
+        return false;
+      } // if
+    } // for
+    for (; i < keyLength; i++) {
+      if (chunk.get(start + i) != this.scratch.get(i)) {
+        return false;
+      } // if
+    } // for
+    return true;
+  } // keyMatches(long, int)
+
+  /**
+   * Append a record with the key in the scratch buffer and the given
+   * value, and return a reference to it.
+   */
+  private long append(int keyLength, V value, int valueLength) {
+    int bytes = (int) recordBytes(keyLength, valueLength);
+    if (this.tail + bytes > this.currentChunkSize()) {
+      // start a new chunk, big enough for this record
+      this.chunks.add(ByteBuffer.allocateDirect(Math.max(this.chunkSize, bytes)));
+      this.tail = 0;
+    } // if
+    ByteBuffer chunk = this.chunks.get(this.chunks.size() - 1);
+    int pos = this.tail;
+    chunk.putInt(pos, keyLength);
+    chunk.putInt(pos + 4, valueLength);
+    ByteBuffer view = chunk.duplicate();
+    view.position(pos + HEADER_BYTES);
+    if (keyLength > 0) {
+      ByteBuffer key = this.scratch.duplicate();
+      key.position(0).limit(keyLength);
+      view.put(key);
+    } // if
+    if (value != null) {
+      this.valueSerializer.write(value, view);
+    } // if
+    this.tail += bytes;
+    this.liveBytes += bytes;
+    return (((long) (this.chunks.size() - 1)) << 32) + pos + 1;
+  } // append(int, V, int)
+
+  /**
+   * Determine the capacity of the last chunk (or 0 if there is none).
+   */
+  private int currentChunkSize() {
+    return this.chunks.isEmpty() ? 0
+      : this.chunks.get(this.chunks.size() - 1).capacity();
+  } // currentChunkSize()
+
+  /**
+   * Read the key of the record at ref.
+   */
+  private K readKey(long ref) {
+    ByteBuffer chunk = this.chunkOf(ref);
+    int pos = positionOf(ref);
+    int keyLength = chunk.getInt(pos);
+    if (keyLength == NULL_LENGTH) {
+      return null;
+    } // if
+    ByteBuffer view = chunk.duplicate();
+    view.position(pos + HEADER_BYTES);
+    return this.keySerializer.read(view, keyLength);
+  } // readKey(long)
+
+  /**
+   * Read the value of the record at ref.
+   */
+  private V readValue(long ref) {
+    ByteBuffer chunk = this.chunkOf(ref);
+    int pos = positionOf(ref);
+    int keyLength = chunk.getInt(pos);
+    int valueLength = chunk.getInt(pos + 4);
+    if (valueLength == NULL_LENGTH) {
+      return null;
+    } // if
+    ByteBuffer view = chunk.duplicate();
+    view.position(pos + HEADER_BYTES + Math.max(keyLength, 0));
+    return this.valueSerializer.read(view, valueLength);
+  } // readValue(long)
+
+  /**
+   * Get the reference stored in a slot of the index.
+   */
+  private long refAt(int slot) {
+    return this.index.getLong(slot * SLOT_BYTES + 8);
+  } // refAt(int)
+
+  /**
+   * Get the chunk that ref points into.
+   */
+  private ByteBuffer chunkOf(long ref) {
+    return this.chunks.get((int) ((ref - 1) >>> 32));
+  } // chunkOf(long)
+
+  /**
+   * Get the position within its chunk that ref points to.
+   */
+  private static int positionOf(long ref) {
+    return (int) (ref - 1);
+  } // positionOf(long)
+
+  /**
+   * Determine how many bytes a record takes up.
+   */
+  private static long recordBytes(int keyLength, int valueLength) {
+    return HEADER_BYTES + Math.max(keyLength, 0) + Math.max(valueLength, 0);
+  } // recordBytes(int, int)
+
+  /**
+   * Record ref, whose key has hash h, in the first free slot of its
+   * probe sequence.
+   */
+  private void indexInsert(int h, long ref) {
+    int mask = this.slots - 1;
+    int slot = h & mask;
+    while (this.refAt(slot) != 0) {
+      slot = (slot + 1) & mask;
+    } // while
+    this.index.putInt(slot * SLOT_BYTES, h);
+    this.index.putLong(slot * SLOT_BYTES + 8, ref);
+  } // indexInsert(int, long)
+
+  /**
+   * Empty a slot of the index, moving later slots of the same probe
+   * run back into the gap.
+   */
+  private void indexDelete(int slot) {
+    int mask = this.slots - 1;
+    int gap = slot;
+    int next = (gap + 1) & mask;
+    while (this.refAt(next) != 0) {
+      int h = this.index.getInt(next * SLOT_BYTES);
+      if (((next - (h & mask)) & mask) >= ((next - gap) & mask)) {
+        this.index.putInt(gap * SLOT_BYTES, h);
+        this.index.putLong(gap * SLOT_BYTES + 8, this.refAt(next));
+        gap = next;
+      } // if
+      next = (next + 1) & mask;
+    } // while
+    this.index.putLong(gap * SLOT_BYTES + 8, 0);
+  } // indexDelete(int)
+
+  /**
+   * Move the index into a new one with the given number of slots.
+   */
+  private void rehash(int newSlots) {
+    if (newSlots > MAX_SLOTS) {
+      throw new OutOfMemoryError("associative array too large");
+    } // if
+    ByteBuffer old = this.index;
+    int oldSlots = this.slots;
+    this.index = ByteBuffer.allocateDirect(newSlots * SLOT_BYTES);
+    this.slots = newSlots;
+    for (int slot = 0; slot < oldSlots; slot++) {
+      long ref = old.getLong(slot * SLOT_BYTES + 8);
+      if (ref != 0) {
+        this.indexInsert(old.getInt(slot * SLOT_BYTES), ref);
+      } // if
+    } // for
+    free(old);
+  } // rehash(int)
+
+  /**
+   * Copy the live records into fresh chunks once the garbage outweighs
+   * them (and fills at least a chunk), so that each byte of garbage is
+   * copied over at most once on average.
+   */
+  private void maybeCompact() {
+    if (this.garbageBytes <= this.liveBytes
+        || this.garbageBytes < this.chunkSize) {
+      return;
+    } // if
+    ArrayList<ByteBuffer> old = this.chunks;
+    this.chunks = new ArrayList<ByteBuffer>();
+    this.tail = this.chunkSize;
+    this.liveBytes = 0;
+    this.garbageBytes = 0;
+    for (int slot = 0; slot < this.slots; slot++) {
+      long ref = this.index.getLong(slot * SLOT_BYTES + 8);
+      if (ref != 0) {
+        ByteBuffer chunk = old.get((int) ((ref - 1) >>> 32));
+        int pos = positionOf(ref);
+        int bytes = (int) recordBytes(chunk.getInt(pos), chunk.getInt(pos + 4));
+        if (this.tail + bytes > this.currentChunkSize()) {
+          this.chunks.add(ByteBuffer.allocateDirect(Math.max(this.chunkSize, bytes)));
+          this.tail = 0;
+        } // if
+        ByteBuffer record = chunk.duplicate();
+        record.position(pos).limit(pos + bytes);
+        ByteBuffer target = this.chunks.get(this.chunks.size() - 1).duplicate();
+        target.position(this.tail);
+        target.put(record);
+        this.index.putLong(slot * SLOT_BYTES + 8,
+          (((long) (this.chunks.size() - 1)) << 32) + this.tail + 1);
+        this.tail += bytes;
+        this.liveBytes += bytes;
+      } // if
+    } // for
+    for (ByteBuffer chunk : old) {
+      free(chunk);
+    } // for
+  } // maybeCompact()
+
+  /**
+   * Give the memory of a direct buffer back to the system now, if the
+   * JVM lets us, rather than when the garbage collector clears the
+   * buffer. Nothing may use the buffer (or any view of it) afterwards.
+   * The buffer must be one we allocated, not a slice or duplicate.
+   *
+   * @throws IllegalArgumentException
+   *   when buffer is a slice or duplicate.
+   */
+  private static void free(ByteBuffer buffer) {
+    if (INVOKE_CLEANER == null) {
+      return;
+    } // if
+    try {
+      INVOKE_CLEANER.invokeExact(buffer);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      // invokeCleaner declares no checked exceptions
+      throw new AssertionError(e);
+    } // try/catch
+  } // free(ByteBuffer)
+
+  /**
+   * Find Unsafe.invokeCleaner, or return null if we cannot. Reading
+   * Unsafe.theUnsafe needs the jdk.unsupported module, which exports
+   * and opens sun.misc; a modular application must require it.
+   */
+  private static MethodHandle findCleaner() {
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Field field = unsafeClass.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      return MethodHandles.lookup().findVirtual(unsafeClass, "invokeCleaner",
+        MethodType.methodType(void.class, ByteBuffer.class))
+        .bindTo(field.get(null));
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      return null;
+    } // try/catch
+  } // findCleaner()
+} // class OffHeapAssociativeArray
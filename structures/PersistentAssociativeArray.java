@@ -0,0 +1,818 @@
+package structures;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable associative array. Rather than change the array, set
+ * and remove return a new version of it, and leave the old version as
+ * it was. That makes it cheap to keep many versions of a table, say,
+ * for undo, for auditing, or for views that must not see later
+ * changes.
+ *
+ * The pairs live in a hash array mapped trie: each level of the trie
+ * uses five more bits of the hash of a key to choose among 32
+ * branches, and keeps only the branches that are in use, packed into
+ * small arrays. set and remove copy just the O(log32 n) nodes on the
+ * path to the key, and the new version shares every other node with
+ * the old one. (This is the design of the persistent maps of Clojure
+ * and Scala.)
+ *
+ * To build a version with many changes, use a Builder, which changes
+ * the nodes it has already copied in place instead of copying them
+ * again for each change.
+ *
+ * The position of a pair depends on its hash, so toString shows the
+ * pairs in no particular order.
+ *
+ * @author Seunghyeon (Hyeon) Kim
+ */
+public final class PersistentAssociativeArray<K, V> {
+  // +-------+-------------------------------------------------------
+  // | Types |
+  // +-------+
+
+  /**
+   * A way to make many changes without copying the trie for each
+   * one. A builder starts with the pairs of some version, and build
+   * returns a version with the pairs the builder has at that moment.
+   * The builder may go on changing after that without affecting the
+   * versions it built.
+   */
+  public static final class Builder<K, V> {
+    /**
+     * The token that marks the nodes this builder may change in
+     * place. Each call to build replaces it, which freezes the nodes
+     * that the built version shares.
+     */
+    Object edit = new Object();
+
+    /**
+     * The root of the trie.
+     */
+    Node root;
+
+    /**
+     * The number of pairs.
+     */
+    int size;
+
+    /**
+     * Create a builder that starts with the pairs in the trie whose
+     * root is root.
+     */
+    Builder(Node root, int size) {
+      this.root = root;
+      this.size = size;
+    } // Builder(Node, int)
+
+    /**
+     * Set the value associated with key to value, and return this
+     * builder.
+     */
+    public Builder<K, V> set(K key, V value) {
+      Change change = new Change();
+      this.root = this.root.set(this.edit, key, value,
+        AssociativeArray.hash(key), 0, change);
+      this.size += change.sizeChange;
+      return this;
+    } // set(K, V)
+
+    /**
+     * Remove the pair associated with key, if there is one, and return
+     * this builder.
+     */
+    public Builder<K, V> remove(K key) {
+      Change change = new Change();
+      this.root = this.root.remove(this.edit, key, AssociativeArray.hash(key),
+        0, change);
+      this.size += change.sizeChange;
+      return this;
+    } // remove(K)
+
+    /**
+     * Determine how many pairs the builder has.
+     */
+    public int size() {
+      return this.size;
+    } // size()
+
+    /**
+     * Get a version with the pairs that the builder has now.
+     */
+    public PersistentAssociativeArray<K, V> build() {
+      this.edit = new Object();
+      return new PersistentAssociativeArray<K, V>(this.root, this.size);
+    } // build()
+  } // class Builder
+
+  /**
+   * The size change that an operation on a trie made.
+   */
+  static final class Change {
+    /**
+     * 1 if a pair was added, -1 if one was removed, and 0 otherwise.
+     */
+    int sizeChange;
+  } // class Change
+
+  /**
+   * A node of the trie. Nodes whose edit is a builder's token belong to
+   * that builder, which may change them in place; all others are
+   * immutable.
+   */
+  abstract static class Node {
+    /**
+     * The token of the builder that may change this node, or null.
+     */
+    Object edit;
+
+    /**
+     * Get the value associated with key, whose hash is h, or NOT_FOUND,
+     * looking at the bits of the hash from shift on.
+     */
+    abstract Object find(Object key, int h, int shift);
+
+    /**
+     * Get a node that has the pairs of this one, but with key (whose
+     * hash is h) associated with value. Returns this node if nothing
+     * changed (or if the change could be made in place).
+     */
+    abstract Node set(Object edit, Object key, Object value, int h,
+      int shift, Change change);
+
+    /**
+     * Get a node that has the pairs of this one, except the one whose
+     * key is key. Returns this node if nothing changed (or if the
+     * change could be made in place).
+     */
+    abstract Node remove(Object edit, Object key, int h, int shift,
+      Change change);
+
+    /**
+     * Determine whether the node holds exactly one pair and no
+     * children, in which case its parent can hold the pair instead.
+     */
+    abstract boolean hasSingleEntry();
+
+    /**
+     * Get the key of the only pair.
+     */
+    abstract Object singleKey();
+
+    /**
+     * Get the value of the only pair.
+     */
+    abstract Object singleValue();
+
+    /**
+     * Get the hash of the key of the only pair.
+     */
+    abstract int singleHash();
+
+    /**
+     * Call action on each pair under this node.
+     */
+    abstract void forEach(BiConsumer<Object, Object> action);
+  } // class Node
+
+  /**
+   * A node that holds up to 32 pairs and children, one for each value
+   * of the five bits of the hash that this level of the trie uses.
+   * Two bitmaps say which values have a pair and which have a child,
+   * and the pairs and children are packed, in order, into arrays.
+   */
+  static final class BitmapNode extends Node {
+    /**
+     * The empty node, with which every trie starts.
+     */
+    static final BitmapNode EMPTY = new BitmapNode(null, 0, 0,
+      new Object[0], new int[0], new Node[0]);
+
+    /**
+     * The branches that hold a pair.
+     */
+    int dataMap;
+
+    /**
+     * The branches that hold a child.
+     */
+    int nodeMap;
+
+    /**
+     * The pairs, as a key followed by its value.
+     */
+    Object[] data;
+
+    /**
+     * The hashes of the keys of the pairs.
+     */
+    int[] hashes;
+
+    /**
+     * The children.
+     */
+    Node[] nodes;
+
+    /**
+     * Create a node with the given contents, which belongs to the
+     * builder whose token is edit (if any).
+     */
+    BitmapNode(Object edit, int dataMap, int nodeMap, Object[] data,
+        int[] hashes, Node[] nodes) {
+      this.edit = edit;
+      this.dataMap = dataMap;
+      this.nodeMap = nodeMap;
+      this.data = data;
+      this.hashes = hashes;
+      this.nodes = nodes;
+    } // BitmapNode(Object, int, int, Object[], int[], Node[])
+
+    Object find(Object key, int h, int shift) {
+      int bit = bit(h, shift);
+      if ((this.dataMap & bit) != 0) {
+        int i = index(this.dataMap, bit);
+        return (this.hashes[i] == h
+                && AssociativeArray.keyEquals(this.data[2 * i], key))
+               ? this.data[2 * i + 1] : NOT_FOUND;
+      } // if
+      if ((this.nodeMap & bit) != 0) {
+        return this.nodes[index(this.nodeMap, bit)].find(key, h, shift + BITS);
+      } // if
+      return NOT_FOUND;
+    } // find(Object, int, int)
+
+    Node set(Object edit, Object key, Object value, int h, int shift,
+        Change change) {
+      int bit = bit(h, shift);
+      if ((this.dataMap & bit) != 0) {
+        int i = index(this.dataMap, bit);
+        if (this.hashes[i] == h
+            && AssociativeArray.keyEquals(this.data[2 * i], key)) {
+          if (this.data[2 * i + 1] == value) {
+            return this;
+          } // if
+          BitmapNode node = this.editable(edit);
+          node.data[2 * i + 1] = value;
+          return node;
+        } // if
+        // two keys share this branch, so push both down a level
+        change.sizeChange = 1;
+        Node child = merge(edit, this.data[2 * i], this.data[2 * i + 1],
+          this.hashes[i], key, value, h, shift + BITS);
+        return this.replaceDataWithNode(edit, bit, i, child);
+      } // if
+      if ((this.nodeMap & bit) != 0) {
+        int j = index(this.nodeMap, bit);
+        Node child = this.nodes[j];
+        Node newChild = child.set(edit, key, value, h, shift + BITS, change);
+        if (newChild == child) {
+          return this;
+        } // if
+        BitmapNode node = this.editable(edit);
+        node.nodes[j] = newChild;
+        return node;
+      } // if
+      change.sizeChange = 1;
+      return this.insertData(edit, bit, key, value, h);
+    } // set(Object, Object, Object, int, int, Change)
+
+    Node remove(Object edit, Object key, int h, int shift, Change change) {
+      int bit = bit(h, shift);
+      if ((this.dataMap & bit) != 0) {
+        int i = index(this.dataMap, bit);
+        if (this.hashes[i] != h
+            || !AssociativeArray.keyEquals(this.data[2 * i], key)) {
+          return this;
+        } // if
+        change.sizeChange = -1;
+        return this.removeData(edit, bit, i);
+      } // if
+      if ((this.nodeMap & bit) != 0) {
+        int j = index(this.nodeMap, bit);
+        Node child = this.nodes[j];
+        Node newChild = child.remove(edit, key, h, shift + BITS, change);
+        if (newChild == child) {
+          return this;
+        } // if
+        if (newChild.hasSingleEntry()) {
+          // keep the trie as shallow as possible by pulling the last
+          // pair of the child up into this node
+          return this.replaceNodeWithData(edit, bit, j, newChild.singleKey(),
+            newChild.singleValue(), newChild.singleHash());
+        } // if
+        BitmapNode node = this.editable(edit);
+        node.nodes[j] = newChild;
+        return node;
+      } // if
+      return this;
+    } // remove(Object, Object, int, int, Change)
+
+    boolean hasSingleEntry() {
+      return this.nodeMap == 0 && Integer.bitCount(this.dataMap) == 1;
+    } // hasSingleEntry()
+
+    Object singleKey() {
+      return this.data[0];
+    } // singleKey()
+
+    Object singleValue() {
+      return this.data[1];
+    } // singleValue()
+
+    int singleHash() {
+      return this.hashes[0];
+    } // singleHash()
+
+    void forEach(BiConsumer<Object, Object> action) {
+      for (int i = 0; i < this.hashes.length; i++) {
+        action.accept(this.data[2 * i], this.data[2 * i + 1]);
+      } // for
+      for (Node node : this.nodes) {
+        node.forEach(action);
+      } // for
+    } // forEach(BiConsumer)
+
+    /**
+     * Get a version of this node that the builder whose token is edit
+     * may change in place: this node if it already belongs to that
+     * builder, and a copy otherwise.
+     */
+    BitmapNode editable(Object edit) {
+      if (edit != null && this.edit == edit) {
+        return this;
+      } // if
+      return new BitmapNode(edit, this.dataMap, this.nodeMap,
+        this.data.clone(), this.hashes.clone(), this.nodes.clone());
+    } // editable(Object)
+
+    /**
+     * Get a node with the given contents, reusing this node if it
+     * belongs to the builder whose token is edit. Arrays passed in
+     * must not be shared with any node that another version can see.
+     */
+    BitmapNode with(Object edit, int dataMap, int nodeMap, Object[] data,
+        int[] hashes, Node[] nodes) {
+      if (edit != null && this.edit == edit) {
+        this.dataMap = dataMap;
+        this.nodeMap = nodeMap;
+        this.data = data;
+        this.hashes = hashes;
+        this.nodes = nodes;
+        return this;
+      } // if
+      return new BitmapNode(edit, dataMap, nodeMap, data, hashes, nodes);
+    } // with(Object, int, int, Object[], int[], Node[])
+
+    /**
+     * Get the children, in an array that a node belonging to edit may
+     * change in place.
+     */
+    Node[] nodesFor(Object edit) {
+      return (edit == null || this.edit == edit) ? this.nodes
+                                                 : this.nodes.clone();
+    } // nodesFor(Object)
+
+    /**
+     * Get the pairs and their hashes, in arrays that a node belonging
+     * to edit may change in place.
+     */
+    Object[] dataFor(Object edit) {
+      return (edit == null || this.edit == edit) ? this.data
+                                                 : this.data.clone();
+    } // dataFor(Object)
+
+    /**
+     * Get the hashes, in an array that a node belonging to edit may
+     * change in place.
+     */
+    int[] hashesFor(Object edit) {
+      return (edit == null || this.edit == edit) ? this.hashes
+                                                 : this.hashes.clone();
+    } // hashesFor(Object)
+
+    /**
+     * Add a pair in branch bit.
+     */
+    BitmapNode insertData(Object edit, int bit, Object key, Object value,
+        int h) {
+      int i = index(this.dataMap, bit);
+      int count = this.hashes.length;
+      Object[] data = new Object[2 * count + 2];
+      System.arraycopy(this.data, 0, data, 0, 2 * i);
+      data[2 * i] = key;
+      data[2 * i + 1] = value;
+      System.arraycopy(this.data, 2 * i, data, 2 * i + 2, 2 * (count - i));
+      int[] hashes = new int[count + 1];
+      System.arraycopy(this.hashes, 0, hashes, 0, i);
+      hashes[i] = h;
+      System.arraycopy(this.hashes, i, hashes, i + 1, count - i);
+      return this.with(edit, this.dataMap | bit, this.nodeMap, data, hashes,
+        this.nodesFor(edit));
+    } // insertData(Object, int, Object, Object, int)
+
+    /**
+     * Remove the pair at index i, in branch bit.
+     */
+    BitmapNode removeData(Object edit, int bit, int i) {
+      int count = this.hashes.length;
+      Object[] data = new Object[2 * count - 2];
+      System.arraycopy(this.data, 0, data, 0, 2 * i);
+      System.arraycopy(this.data, 2 * i + 2, data, 2 * i, 2 * (count - i - 1));
+      int[] hashes = new int[count - 1];
+      System.arraycopy(this.hashes, 0, hashes, 0, i);
+      System.arraycopy(this.hashes, i + 1, hashes, i, count - i - 1);
+      return this.with(edit, this.dataMap & ~bit, this.nodeMap, data, hashes,
+        this.nodesFor(edit));
+    } // removeData(Object, int, int)
+
+    /**
+     * Replace the pair at index i, in branch bit, with child.
+     */
+    BitmapNode replaceDataWithNode(Object edit, int bit, int i, Node child) {
+      int count = this.hashes.length;
+      Object[] data = new Object[2 * count - 2];
+      System.arraycopy(this.data, 0, data, 0, 2 * i);
+      System.arraycopy(this.data, 2 * i + 2, data, 2 * i, 2 * (count - i - 1));
+      int[] hashes = new int[count - 1];
+      System.arraycopy(this.hashes, 0, hashes, 0, i);
+      System.arraycopy(this.hashes, i + 1, hashes, i, count - i - 1);
+      int j = index(this.nodeMap, bit);
+      Node[] nodes = new Node[this.nodes.length + 1];
+      System.arraycopy(this.nodes, 0, nodes, 0, j);
+      nodes[j] = child;
+      System.arraycopy(this.nodes, j, nodes, j + 1, this.nodes.length - j);
+      return this.with(edit, this.dataMap & ~bit, this.nodeMap | bit, data,
+        hashes, nodes);
+    } // replaceDataWithNode(Object, int, int, Node)
+
+    /**
+     * Replace the child at index j, in branch bit, with a pair.
+     */
+    BitmapNode replaceNodeWithData(Object edit, int bit, int j, Object key,
+        Object value, int h) {
+      Node[] nodes = new Node[this.nodes.length - 1];
+      System.arraycopy(this.nodes, 0, nodes, 0, j);
+      System.arraycopy(this.nodes, j + 1, nodes, j, this.nodes.length - j - 1);
+      int i = index(this.dataMap, bit);
+      int count = this.hashes.length;
+      Object[] data = new Object[2 * count + 2];
+      System.arraycopy(this.data, 0, data, 0, 2 * i);
+      data[2 * i] = key;
+      data[2 * i + 1] = value;
+      System.arraycopy(this.data, 2 * i, data, 2 * i + 2, 2 * (count - i));
+      int[] hashes = new int[count + 1];
+      System.arraycopy(this.hashes, 0, hashes, 0, i);
+      hashes[i] = h;
+      System.arraycopy(this.hashes, i, hashes, i + 1, count - i);
+      return this.with(edit, this.dataMap | bit, this.nodeMap & ~bit, data,
+        hashes, nodes);
+    } // replaceNodeWithData(Object, int, int, Object, Object, int)
+  } // class BitmapNode
+
+  /**
+   * A node for keys whose hashes are equal in all 32 bits, which no
+   * further level of the trie could tell apart. It keeps them in a
+   * plain list.
+   */
+  static final class CollisionNode extends Node {
+    /**
+     * The hash that all of the keys share.
+     */
+    final int hash;
+
+    /**
+     * The keys.
+     */
+    Object[] keys;
+
+    /**
+     * The values, at the same positions as their keys.
+     */
+    Object[] values;
+
+    /**
+     * Create a node with the given keys, all of which have hash, and
+     * values, which belongs to the builder whose token is edit (if
+     * any).
+     */
+    CollisionNode(Object edit, int hash, Object[] keys, Object[] values) {
+      this.edit = edit;
+      this.hash = hash;
+      this.keys = keys;
+      this.values = values;
+    } // CollisionNode(Object, int, Object[], Object[])
+
+    Object find(Object key, int h, int shift) {
+      int i = (h == this.hash) ? this.indexOf(key) : -1;
+      return (i < 0) ? NOT_FOUND : this.values[i];
+    } // find(Object, int, int)
+
+    Node set(Object edit, Object key, Object value, int h, int shift,
+        Change change) {
+      if (h != this.hash) {
+        // make room for a key with another hash by putting this node
+        // under a node that can tell the two hashes apart
+        BitmapNode parent = new BitmapNode(edit, 0, bit(this.hash, shift),
+          new Object[0], new int[0], new Node[] { this });
+        return parent.set(edit, key, value, h, shift, change);
+      } // if
+      int i = this.indexOf(key);
+      if (i >= 0) {
+        if (this.values[i] == value) {
+          return this;
+        } // if
+        CollisionNode node = this.editable(edit);
+        node.values[i] = value;
+        return node;
+      } // if
+      change.sizeChange = 1;
+      int count = this.keys.length;
+      Object[] keys = Arrays.copyOf(this.keys, count + 1);
+      Object[] values = Arrays.copyOf(this.values, count + 1);
+      keys[count] = key;
+      values[count] = value;
+      return this.with(edit, keys, values);
+    } // set(Object, Object, Object, int, int, Change)
+
+    Node remove(Object edit, Object key, int h, int shift, Change change) {
+      int i = (h == this.hash) ? this.indexOf(key) : -1;
+      if (i < 0) {
+        return this;
+      } // if
+      change.sizeChange = -1;
+      int count = this.keys.length;
+      Object[] keys = new Object[count - 1];
+      Object[] values = new Object[count - 1];
+      System.arraycopy(this.keys, 0, keys, 0, i);
+      System.arraycopy(this.keys, i + 1, keys, i, count - i - 1);
+      System.arraycopy(this.values, 0, values, 0, i);
+      System.arraycopy(this.values, i + 1, values, i, count - i - 1);
+      return this.with(edit, keys, values);
+    } // remove(Object, Object, int, int, Change)
+
+    boolean hasSingleEntry() {
+      return this.keys.length == 1;
+    } // hasSingleEntry()
+
+    Object singleKey() {
+      return this.keys[0];
+    } // singleKey()
+
+    Object singleValue() {
+      return this.values[0];
+    } // singleValue()
+
+    int singleHash() {
+      return this.hash;
+    } // singleHash()
+
+    void forEach(BiConsumer<Object, Object> action) {
+      for (int i = 0; i < this.keys.length; i++) {
+        action.accept(this.keys[i], this.values[i]);
+      } // for
+    } // forEach(BiConsumer)
+
+    /**
+     * Find the position of key, or -1 if it is not here.
+     */
+    int indexOf(Object key) {
+      for (int i = 0; i < this.keys.length; i++) {
+        if (AssociativeArray.keyEquals(this.keys[i], key)) {
+          return i;
+        } // if
+      } // for
+      return -1;
+    } // indexOf(Object)
+
+    /**
+     * Get a version of this node that the builder whose token is edit
+     * may change in place.
+     */
+    CollisionNode editable(Object edit) {
+      if (edit != null && this.edit == edit) {
+        return this;
+      } // if
+      return new CollisionNode(edit, this.hash, this.keys.clone(),
+        this.values.clone());
+    } // editable(Object)
+
+    /**
+     * Get a node with the given keys and values, reusing this node if
+     * it belongs to the builder whose token is edit.
+     */
+    CollisionNode with(Object edit, Object[] keys, Object[] values) {
+      if (edit != null && this.edit == edit) {
+        this.keys = keys;
+        this.values = values;
+        return this;
+      } // if
+      return new CollisionNode(edit, this.hash, keys, values);
+    } // with(Object, Object[], Object[])
+  } // class CollisionNode
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of bits of the hash that each level of the trie uses.
+   */
+  static final int BITS = 5;
+
+  /**
+   * What find returns for a missing key. (We cannot use null, since
+   * null is a perfectly good value.)
+   */
+  static final Object NOT_FOUND = new Object();
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The root of the trie.
+   */
+  final Node root;
+
+  /**
+   * The number of pairs.
+   */
+  final int size;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty associative array.
+   */
+  public PersistentAssociativeArray() {
+    this(BitmapNode.EMPTY, 0);
+  } // PersistentAssociativeArray()
+
+  /**
+   * Create an associative array with the pairs in the trie whose root
+   * is root.
+   */
+  PersistentAssociativeArray(Node root, int size) {
+    this.root = root;
+    this.size = size;
+  } // PersistentAssociativeArray(Node, int)
+
+  // +------------------+--------------------------------------------
+  // | Standard Methods |
+  // +------------------+
+
+  /**
+   * Convert the array to a string.
+   */
+  public String toString() {
+    StringBuilder ret = new StringBuilder("{ ");
+    int[] seen = new int[1];
+    this.root.forEach((key, value) -> {
+      ret.append(key).append(": ").append(value);
+      seen[0]++;
+      ret.append((seen[0] != this.size) ? ", " : " ");
+    });
+    return ret.append("}").toString();
+  } // toString()
+
+  // +----------------+----------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  /**
+   * Get a version of this associative array in which key is
+   * associated with value. This one does not change.
+   */
+  public PersistentAssociativeArray<K, V> set(K key, V value) {
+    Change change = new Change();
+    Node root = this.root.set(null, key, value, AssociativeArray.hash(key), 0,
+      change);
+    return (root == this.root) ? this
+      : new PersistentAssociativeArray<K, V>(root, this.size + change.sizeChange);
+  } // set(K, V)
+
+  /**
+   * Get a version of this associative array without the pair
+   * associated with key. This one does not change.
+   */
+  public PersistentAssociativeArray<K, V> remove(K key) {
+    Change change = new Change();
+    Node root = this.root.remove(null, key, AssociativeArray.hash(key), 0,
+      change);
+    return (root == this.root) ? this
+      : new PersistentAssociativeArray<K, V>(root, this.size + change.sizeChange);
+  } // remove(K)
+
+  /**
+   * Get the value associated with key.
+   *
+   * @throws KeyNotFoundException
+   *   when the key does not appear in the associative array.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public V get(K key) throws KeyNotFoundException {
+    Object value = this.root.find(key, AssociativeArray.hash(key), 0);
+    if (value == NOT_FOUND) {
+      throw new KeyNotFoundException();
+    } // if
+    return (V) value;
+  } // get(K)
+
+  /**
+   * Get the value associated with key, or defaultValue when the key
+   * does not appear in the associative array.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public V getOrDefault(K key, V defaultValue) {
+    Object value = this.root.find(key, AssociativeArray.hash(key), 0);
+    return (value == NOT_FOUND) ? defaultValue : (V) value;
+  } // getOrDefault(K, V)
+
+  /**
+   * Determine if key appears in the associative array.
+   */
+  public boolean hasKey(K key) {
+    return this.root.find(key, AssociativeArray.hash(key), 0) != NOT_FOUND;
+  } // hasKey(K)
+
+  /**
+   * Determine how many values are in the associative array.
+   */
+  public int size() {
+    return this.size;
+  } // size()
+
+  /**
+   * Call action on each pair.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public void forEach(BiConsumer<? super K, ? super V> action) {
+    this.root.forEach((key, value) -> action.accept((K) key, (V) value));
+  } // forEach(BiConsumer)
+
+  /**
+   * Get a builder that starts with the pairs of this associative array.
+   */
+  public Builder<K, V> toBuilder() {
+    return new Builder<K, V>(this.root, this.size);
+  } // toBuilder()
+
+  /**
+   * Get a builder that starts with no pairs.
+   */
+  public static <K, V> Builder<K, V> builder() {
+    return new Builder<K, V>(BitmapNode.EMPTY, 0);
+  } // builder()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Make a node that holds two pairs with different keys, looking at
+   * the bits of their hashes from shift on.
+   */
+  static Node merge(Object edit, Object key1, Object value1, int h1,
+      Object key2, Object value2, int h2, int shift) {
+    if (h1 == h2) {
+      return new CollisionNode(edit, h1, new Object[] { key1, key2 },
+        new Object[] { value1, value2 });
+    } // if
+    int bit1 = bit(h1, shift);
+    int bit2 = bit(h2, shift);
+    if (bit1 == bit2) {
+      // the hashes differ somewhere further on
+      Node child = merge(edit, key1, value1, h1, key2, value2, h2,
+        shift + BITS);
+      return new BitmapNode(edit, 0, bit1, new Object[0], new int[0],
+        new Node[] { child });
+    } // if
+    // keep the pairs in the order of their branches
+    if (Integer.compareUnsigned(bit1, bit2) > 0) {
+      return new BitmapNode(edit, bit1 | bit2, 0,
+        new Object[] { key2, value2, key1, value1 }, new int[] { h2, h1 },
+        new Node[0]);
+    } // if
+    return new BitmapNode(edit, bit1 | bit2, 0,
+      new Object[] { key1, value1, key2, value2 }, new int[] { h1, h2 },
+      new Node[0]);
+  } // merge(Object, Object, Object, int, Object, Object, int, int)
+
+  /**
+   * Get the bit for the branch that h takes at the level that looks at
+   * the bits of h from shift on.
+   */
+  static int bit(int h, int shift) {
+    return 1 << ((h >>> shift) & 31);
+  } // bit(int, int)
+
+  /**
+   * Get the position, among the branches in map, of the branch bit.
+   */
+  static int index(int map, int bit) {
+    return Integer.bitCount(map & (bit - 1));
+  } // index(int, int)
+} // class PersistentAssociativeArray
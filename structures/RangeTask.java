@@ -0,0 +1,99 @@
+package structures;
+
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+
+/**
+ * A fork/join task that works on a range of positions by splitting it
+ * in half until the pieces are no bigger than a batch, running a leaf
+ * computation on each piece, and combining the results of the halves.
+ * The bulk operations of AssociativeArray use it to spread work over
+ * the ForkJoin common pool.
+ *
+ * @author Seunghyeon (Hyeon) Kim
+ */
+final class RangeTask<R> extends RecursiveTask<R> {
+  // +-------+-------------------------------------------------------
+  // | Types |
+  // +-------+
+
+  /**
+   * A computation on the positions from to to-1.
+   */
+  interface Leaf<R> {
+    R apply(int from, int to);
+  } // interface Leaf
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The version of the serialized form, which RecursiveTask requires.
+   */
+  private static final long serialVersionUID = 1L;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The first position of the range.
+   */
+  final int from;
+
+  /**
+   * One past the last position of the range.
+   */
+  final int to;
+
+  /**
+   * The largest range that we do not split.
+   */
+  final int batch;
+
+  /**
+   * What to do with each piece.
+   */
+  final Leaf<R> leaf;
+
+  /**
+   * How to combine the results of two adjacent pieces.
+   */
+  final BinaryOperator<R> combine;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a task that runs leaf on pieces of the positions from to
+   * to-1, each at most batch long, and combines the results.
+   */
+  RangeTask(int from, int to, int batch, Leaf<R> leaf,
+      BinaryOperator<R> combine) {
+    this.from = from;
+    this.to = to;
+    this.batch = batch;
+    this.leaf = leaf;
+    this.combine = combine;
+  } // RangeTask(int, int, int, Leaf, BinaryOperator)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  @Override
+  protected R compute() {
+    if (this.to - this.from <= this.batch) {
+      return this.leaf.apply(this.from, this.to);
+    } // if
+    int mid = (this.from + this.to) >>> 1;
+    RangeTask<R> left =
+      new RangeTask<R>(this.from, mid, this.batch, this.leaf, this.combine);
+    left.fork();
+    R right = new RangeTask<R>(mid, this.to, this.batch, this.leaf,
+      this.combine).compute();
+    return this.combine.apply(left.join(), right);
+  } // compute()
+} // class RangeTask
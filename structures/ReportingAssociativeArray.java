@@ -51,6 +51,35 @@ public class ReportingAssociativeArray<K,V> extends AssociativeArray<K,V> {
     pen.println("  " + name + ": " + this.toString());
   } // set (K,V)
 
+  /**
+   * Set all of the pairs in other, reporting the batch as a whole.
+   */
+  public void setAll(AssociativeArray<? extends K, ? extends V> other) {
+    super.setAll(other);
+    pen.println(name + ".setAll(" + other.size + " pairs): size = "
+      + super.size());
+  } // setAll(AssociativeArray)
+
+  /**
+   * Set keys[i] to values[i] for each i, reporting the batch as a
+   * whole.
+   */
+  public void setAll(K[] keys, V[] values) {
+    super.setAll(keys, values);
+    pen.println(name + ".setAll(" + keys.length + " pairs): size = "
+      + super.size());
+  } // setAll(K[], V[])
+
+  /**
+   * Look up each of keys, reporting the batch as a whole.
+   */
+  public int getAll(K[] keys, V[] out) {
+    int found = super.getAll(keys, out);
+    pen.println(name + ".getAll(" + keys.length + " keys) = " + found
+      + " found");
+    return found;
+  } // getAll(K[], V[])
+
   /**
    * Get the value associated with key.
    *
@@ -92,6 +121,17 @@ public class ReportingAssociativeArray<K,V> extends AssociativeArray<K,V> {
     pen.println("  " + name + ": " + this.toString());
   } // remove(K)
 
+  /**
+   * Remove the pairs associated with keys, reporting the batch as a
+   * whole.
+   */
+  public int removeAll(Iterable<? extends K> keys) {
+    int removed = super.removeAll(keys);
+    pen.println(name + ".removeAll(...) = " + removed + " removed, size = "
+      + super.size());
+    return removed;
+  } // removeAll(Iterable)
+
   /**
    * Determine how many values are in the associative array.
    */
@@ -0,0 +1,105 @@
+package structures;
+
+/**
+ * A hash index that uses Robin Hood hashing. Like linear probing, a
+ * key lives at or after the slot it hashes to, but on the way there an
+ * insertion takes the slot of any entry that is closer to its own home
+ * than the new key is, and carries on inserting that entry instead.
+ * That evens out the distances between entries and their homes, so
+ * the longest probe stays short even when the index is 90% full, and
+ * a lookup for a missing key can stop as soon as it meets an entry
+ * closer to home than the key would be.
+ *
+ * Deleting shifts the rest of the run back by one slot, which keeps
+ * the distances in order without any deleted markers.
+ *
+ * @author Seunghyeon (Hyeon) Kim
+ */
+final class RobinHoodIndex extends HashIndex {
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create an index with length slots (a power of two), each able to
+   * hold positions less than capacity.
+   */
+  RobinHoodIndex(int length, int capacity) {
+    super(length, capacity);
+  } // RobinHoodIndex(int, int)
+
+  /**
+   * Create a copy of other.
+   */
+  RobinHoodIndex(RobinHoodIndex other) {
+    super(other);
+  } // RobinHoodIndex(RobinHoodIndex)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  @Override
+  int find(Object key, int h, Object[] keys, int[] hashes) {
+    int slot = h & this.mask;
+    int distance = 0;
+    int pos;
+    while ((pos = this.slots.get(slot)) != AssociativeArray.EMPTY) {
+      // had the key been here, it would have displaced this entry
+      if (distance > ((slot - hashes[pos]) & this.mask)) {
+        return -1;
+      } // if
+      if (hashes[pos] == h && AssociativeArray.keyEquals(keys[pos], key)) {
+        return slot;
+      } // if
+      slot = (slot + 1) & this.mask;
+      distance++;
+    } // while
+    return -1;
+  } // find(Object, int, Object[], int[])
+
+  @Override
+  void insert(int pos, int[] hashes) {
+    int slot = hashes[pos] & this.mask;
+    int distance = 0;
+    int current = pos;
+    int resident;
+    while ((resident = this.slots.get(slot)) != AssociativeArray.EMPTY) {
+      int residentDistance = (slot - hashes[resident]) & this.mask;
+      // take from the rich (entries near home) and give to the poor
+      if (residentDistance < distance) {
+        this.slots.set(slot, current);
+        current = resident;
+        distance = residentDistance;
+      } // if
+      slot = (slot + 1) & this.mask;
+      distance++;
+    } // while
+    this.slots.set(slot, current);
+  } // insert(int, int[])
+
+  @Override
+  void delete(int slot, int[] hashes) {
+    int gap = slot;
+    int next = (gap + 1) & this.mask;
+    int pos;
+    // shift back every entry that is not already at home
+    while ((pos = this.slots.get(next)) != AssociativeArray.EMPTY
+        && ((next - hashes[pos]) & this.mask) != 0) {
+      this.slots.set(gap, pos);
+      gap = next;
+      next = (next + 1) & this.mask;
+    } // while
+    this.slots.set(gap, AssociativeArray.EMPTY);
+  } // delete(int, int[])
+
+  @Override
+  int probeLength(int slot, int[] hashes) {
+    return ((slot - hashes[this.slots.get(slot)]) & this.mask) + 1;
+  } // probeLength(int, int[])
+
+  @Override
+  HashIndex copy() {
+    return new RobinHoodIndex(this);
+  } // copy()
+} // class RobinHoodIndex
@@ -0,0 +1,135 @@
+package structures;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A way to turn values of type T into bytes and back, for data
+ * structures that keep their contents outside the Java heap.
+ *
+ * Serializers never see null; the structures that use them record
+ * null separately. When used for keys, equal values must always
+ * serialize to the same bytes, since keys are compared byte by byte.
+ *
+ * @author Seunghyeon (Hyeon) Kim
+ */
+public interface Serializer<T> {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * Serialize strings as UTF-8.
+   */
+  Serializer<String> STRING = new Serializer<String>() {
+    public int sizeOf(String value) {
+      int size = 0;
+      for (int i = 0; i < value.length(); i++) {
+        char c = value.charAt(i);
+        if (c < 0x80) {
+          size += 1;
+        } else if (c < 0x800) {
+          size += 2;
+        } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+            && Character.isLowSurrogate(value.charAt(i + 1))) {
+          size += 4;
+          i++;
+        } else if (Character.isSurrogate(c)) {
+          // getBytes replaces an unpaired surrogate with '?'
+          size += 1;
+        } else {
+          size += 3;
+        } // if/else
+      } // for
+      return size;
+    } // sizeOf(String)
+
+    public void write(String value, ByteBuffer buffer) {
+      // encode straight into the buffer, producing the same bytes as
+      // getBytes(UTF_8) without allocating an array for them
+      for (int i = 0; i < value.length(); i++) {
+        char c = value.charAt(i);
+        if (c < 0x80) {
+          buffer.put((byte) c);
+        } else if (c < 0x800) {
+          buffer.put((byte) (0xC0 | (c >>> 6)));
+          buffer.put((byte) (0x80 | (c & 0x3F)));
+        } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+            && Character.isLowSurrogate(value.charAt(i + 1))) {
+          int cp = Character.toCodePoint(c, value.charAt(++i));
+          buffer.put((byte) (0xF0 | (cp >>> 18)));
+          buffer.put((byte) (0x80 | ((cp >>> 12) & 0x3F)));
+          buffer.put((byte) (0x80 | ((cp >>> 6) & 0x3F)));
+          buffer.put((byte) (0x80 | (cp & 0x3F)));
+        } else if (Character.isSurrogate(c)) {
+          buffer.put((byte) '?');
+        } else {
+          buffer.put((byte) (0xE0 | (c >>> 12)));
+          buffer.put((byte) (0x80 | ((c >>> 6) & 0x3F)));
+          buffer.put((byte) (0x80 | (c & 0x3F)));
+        } // if/else
+      } // for
+    } // write(String, ByteBuffer)
+
+    public String read(ByteBuffer buffer, int length) {
+      byte[] bytes = new byte[length];
+      buffer.get(bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    } // read(ByteBuffer, int)
+  };
+
+  /**
+   * Serialize integers as four bytes.
+   */
+  Serializer<Integer> INTEGER = new Serializer<Integer>() {
+    public int sizeOf(Integer value) {
+      return Integer.BYTES;
+    } // sizeOf(Integer)
+
+    public void write(Integer value, ByteBuffer buffer) {
+      buffer.putInt(value);
+    } // write(Integer, ByteBuffer)
+
+    public Integer read(ByteBuffer buffer, int length) {
+      return buffer.getInt();
+    } // read(ByteBuffer, int)
+  };
+
+  /**
+   * Serialize longs as eight bytes.
+   */
+  Serializer<Long> LONG = new Serializer<Long>() {
+    public int sizeOf(Long value) {
+      return Long.BYTES;
+    } // sizeOf(Long)
+
+    public void write(Long value, ByteBuffer buffer) {
+      buffer.putLong(value);
+    } // write(Long, ByteBuffer)
+
+    public Long read(ByteBuffer buffer, int length) {
+      return buffer.getLong();
+    } // read(ByteBuffer, int)
+  };
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Determine how many bytes value serializes to.
+   */
+  int sizeOf(T value);
+
+  /**
+   * Write the sizeOf(value) bytes of value at the position of buffer,
+   * advancing the position past them.
+   */
+  void write(T value, ByteBuffer buffer);
+
+  /**
+   * Read a value that takes up length bytes at the position of buffer,
+   * advancing the position past them.
+   */
+  T read(ByteBuffer buffer, int length);
+} // interface Serializer
@@ -0,0 +1,315 @@
+package structures;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+/**
+ * An associative array that keeps its pairs sorted by key. The keys
+ * and values live in two parallel arrays, sorted by key, so lookups
+ * are binary searches and walking through the pairs in order just
+ * reads the arrays from left to right.
+ *
+ * get, hasKey, floorKey, and ceilingKey take O(log n) time. set and
+ * remove take O(log n) time to find their place, plus the time to
+ * shift the later pairs over by one; this suits tables that are read
+ * much more often than they change.
+ *
+ * @author Seunghyeon (Hyeon) Kim
+ */
+public class SortedAssociativeArray<K, V> {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The default capacity of the initial arrays.
+   */
+  static final int DEFAULT_CAPACITY = 16;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * How we order keys.
+   */
+  final Comparator<? super K> comparator;
+
+  /**
+   * The number of key/value pairs.
+   */
+  int size;
+
+  /**
+   * The keys, in increasing order, in positions 0 to size-1.
+   */
+  Object[] keys;
+
+  /**
+   * The values, at the same positions as their keys.
+   */
+  Object[] values;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty associative array that orders its keys with
+   * comparator.
+   */
+  public SortedAssociativeArray(Comparator<? super K> comparator) {
+    this.comparator = comparator;
+    this.keys = new Object[DEFAULT_CAPACITY];
+    this.values = new Object[DEFAULT_CAPACITY];
+    this.size = 0;
+  } // SortedAssociativeArray(Comparator)
+
+  /**
+   * Create a new, empty associative array that orders its keys by
+   * their natural order. The keys may not be null.
+   */
+  public static <K extends Comparable<? super K>, V>
+      SortedAssociativeArray<K, V> naturalOrder() {
+    return new SortedAssociativeArray<K, V>(Comparator.<K>naturalOrder());
+  } // naturalOrder()
+
+  // +------------------+--------------------------------------------
+  // | Standard Methods |
+  // +------------------+
+
+  /**
+   * Create a copy of this associative array.
+   */
+  public SortedAssociativeArray<K, V> clone() {
+    SortedAssociativeArray<K, V> temp =
+      new SortedAssociativeArray<K, V>(this.comparator);
+    temp.keys = Arrays.copyOf(this.keys, Math.max(this.size, 1));
+    temp.values = Arrays.copyOf(this.values, Math.max(this.size, 1));
+    temp.size = this.size;
+    return temp;
+  } // clone()
+
+  /**
+   * Convert the array to a string, with the pairs in order by key.
+   */
+  public String toString() {
+    StringBuilder ret = new StringBuilder("{ ");
+    for (int i = 0; i < this.size; i++) {
+      ret.append(this.keys[i]).append(": ").append(this.values[i]);
+      ret.append((i != this.size - 1) ? ", " : " ");
+    } // for
+    return ret.append("}").toString();
+  } // toString()
+
+  // +----------------+----------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  /**
+   * Set the value associated with key to value. Future calls to
+   * get(key) will return value.
+   */
+  public void set(K key, V value) {
+    int pos = this.search(key);
+    if (pos >= 0) {
+      this.values[pos] = value;
+      return;
+    } // if
+    // the key belongs just before the first larger key
+    pos = -(pos + 1);
+    if (this.size == this.keys.length) {
+      int capacity = Math.max(2 * this.keys.length, 1);
+      this.keys = Arrays.copyOf(this.keys, capacity);
+      this.values = Arrays.copyOf(this.values, capacity);
+    } // if
+    System.arraycopy(this.keys, pos, this.keys, pos + 1, this.size - pos);
+    System.arraycopy(this.values, pos, this.values, pos + 1, this.size - pos);
+    this.keys[pos] = key;
+    this.values[pos] = value;
+    this.size++;
+  } // set(K,V)
+
+  /**
+   * Get the value associated with key.
+   *
+   * @throws KeyNotFoundException
+   *   when the key does not appear in the associative array.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public V get(K key) throws KeyNotFoundException {
+    int pos = this.search(key);
+    if (pos < 0) {
+      throw new KeyNotFoundException();
+    } // if
+    return (V) this.values[pos];
+  } // get(K)
+
+  /**
+   * Get the value associated with key, or defaultValue when the key
+   * does not appear in the associative array.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public V getOrDefault(K key, V defaultValue) {
+    int pos = this.search(key);
+    return (pos < 0) ? defaultValue : (V) this.values[pos];
+  } // getOrDefault(K, V)
+
+  /**
+   * Determine if key appears in the associative array.
+   */
+  public boolean hasKey(K key) {
+    return this.search(key) >= 0;
+  } // hasKey(K)
+
+  /**
+   * Remove the key/value pair associated with a key. Future calls
+   * to get(key) will throw an exception. If the key does not appear
+   * in the associative array, does nothing.
+   */
+  public void remove(K key) {
+    int pos = this.search(key);
+    if (pos < 0) {
+      return;
+    } // if
+    int later = this.size - pos - 1;
+    System.arraycopy(this.keys, pos + 1, this.keys, pos, later);
+    System.arraycopy(this.values, pos + 1, this.values, pos, later);
+    this.size--;
+    this.keys[this.size] = null;
+    this.values[this.size] = null;
+  } // remove(K)
+
+  /**
+   * Determine how many values are in the associative array.
+   */
+  public int size() {
+    return this.size;
+  } // size()
+
+  /**
+   * Get the largest key that is less than or equal to key, or null if
+   * there is none.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public K floorKey(K key) {
+    int pos = this.search(key);
+    if (pos < 0) {
+      // step back from where the key would go
+      pos = -(pos + 1) - 1;
+    } // if
+    return (pos < 0) ? null : (K) this.keys[pos];
+  } // floorKey(K)
+
+  /**
+   * Get the smallest key that is greater than or equal to key, or null
+   * if there is none.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public K ceilingKey(K key) {
+    int pos = this.search(key);
+    if (pos < 0) {
+      pos = -(pos + 1);
+    } // if
+    return (pos >= this.size) ? null : (K) this.keys[pos];
+  } // ceilingKey(K)
+
+  /**
+   * Get the smallest key, or null if the array is empty.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public K firstKey() {
+    return (this.size == 0) ? null : (K) this.keys[0];
+  } // firstKey()
+
+  /**
+   * Get the largest key, or null if the array is empty.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public K lastKey() {
+    return (this.size == 0) ? null : (K) this.keys[this.size - 1];
+  } // lastKey()
+
+  /**
+   * Call action on each pair, in order by key.
+   */
+  public void forEach(BiConsumer<? super K, ? super V> action) {
+    this.forEachBetween(0, this.size, action);
+  } // forEach(BiConsumer)
+
+  /**
+   * Call action on each pair whose key is at least from and less than
+   * to, in order by key.
+   */
+  public void forEachInRange(K from, K to,
+      BiConsumer<? super K, ? super V> action) {
+    int start = this.lowerBound(from);
+    int end = this.lowerBound(to);
+    this.forEachBetween(start, Math.max(start, end), action);
+  } // forEachInRange(K, K, BiConsumer)
+
+  /**
+   * Call action on each pair whose key is at least from, in order by
+   * key, for as long as inRange accepts the key. For example, if the
+   * keys are strings, forEachFrom(p, (k) -> k.startsWith(p), action)
+   * visits the pairs whose keys start with p.
+   */
+  @SuppressWarnings({ "unchecked" })
+  public void forEachFrom(K from, Predicate<? super K> inRange,
+      BiConsumer<? super K, ? super V> action) {
+    for (int i = this.lowerBound(from); i < this.size; i++) {
+      K key = (K) this.keys[i];
+      if (!inRange.test(key)) {
+        return;
+      } // if
+      action.accept(key, (V) this.values[i]);
+    } // for
+  } // forEachFrom(K, Predicate, BiConsumer)
+
+  // +-----------------+---------------------------------------------
+  // | Private Methods |
+  // +-----------------+
+
+  /**
+   * Call action on the pairs in positions start to end-1.
+   */
+  @SuppressWarnings({ "unchecked" })
+  private void forEachBetween(int start, int end,
+      BiConsumer<? super K, ? super V> action) {
+    for (int i = start; i < end; i++) {
+      action.accept((K) this.keys[i], (V) this.values[i]);
+    } // for
+  } // forEachBetween(int, int, BiConsumer)
+
+  /**
+   * Find the position of key. If key does not appear, return
+   * -(p + 1), where p is the position where key would go.
+   */
+  @SuppressWarnings({ "unchecked" })
+  private int search(K key) {
+    int lo = 0;
+    int hi = this.size - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      int order = this.comparator.compare((K) this.keys[mid], key);
+      if (order < 0) {
+        lo = mid + 1;
+      } else if (order > 0) {
+        hi = mid - 1;
+      } else {
+        return mid;
+      } // if/else
+    } // while
+    return -(lo + 1);
+  } // search(K)
+
+  /**
+   * Find the position of the first key that is at least key.
+   */
+  private int lowerBound(K key) {
+    int pos = this.search(key);
+    return (pos >= 0) ? pos : -(pos + 1);
+  } // lowerBound(K)
+} // class SortedAssociativeArray
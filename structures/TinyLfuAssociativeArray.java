@@ -0,0 +1,193 @@
+package structures;
+
+import java.util.function.BiConsumer;
+
+/**
+ * A bounded associative array that decides what to evict by Window
+ * TinyLFU, which weighs how often keys are used as well as how
+ * recently. Plain LRU lets a single pass over many cold keys (a scan)
+ * push out every hot one, and a loop over slightly more keys than fit
+ * misses on every lookup. TinyLFU keeps a FrequencySketch of recent
+ * lookups, and lets a new key in only if it has been used more often
+ * than the key it would push out.
+ *
+ * The entries are kept in three LRU lists:
+ *
+ *   window: about 1% of the capacity. New pairs land here, so that a
+ *     burst of uses of a new key can build up its frequency.
+ *   probation: pairs that have left the window, and pairs demoted from
+ *     protected. The least recently used of them is the usual victim.
+ *   protected: pairs used again while in probation. These make up at
+ *     most 80% of the rest.
+ *
+ * When the window overflows, its least recently used pair becomes a
+ * candidate for the main region. If the array is full, the candidate
+ * competes with the least recently used pair in probation, and the
+ * one with the lower estimated frequency is evicted.
+ *
+ * Apart from the order of eviction, it behaves like LruAssociativeArray.
+ * toString shows the window, then probation, then protected, each from
+ * least to most recently used.
+ *
+ * @author Seunghyeon (Hyeon) Kim
+ */
+public class TinyLfuAssociativeArray<K, V> extends LruAssociativeArray<K, V> {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The list of new pairs.
+   */
+  static final int WINDOW = 0;
+
+  /**
+   * The list of pairs that may be evicted.
+   */
+  static final int PROBATION = 1;
+
+  /**
+   * The list of pairs that have proven themselves.
+   */
+  static final int PROTECTED = 2;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The recent frequency of each key.
+   */
+  FrequencySketch sketch;
+
+  /**
+   * The most pairs the window holds.
+   */
+  final int windowCapacity;
+
+  /**
+   * The most pairs the protected list holds.
+   */
+  final int protectedCapacity;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty associative array that holds at most capacity
+   * pairs.
+   *
+   * @throws IllegalArgumentException
+   *   when capacity is not positive.
+   */
+  public TinyLfuAssociativeArray(int capacity) {
+    this(capacity, null);
+  } // TinyLfuAssociativeArray(int)
+
+  /**
+   * Create a new, empty associative array that holds at most capacity
+   * pairs, and calls listener with the key and value of each pair that
+   * it evicts. (Pairs removed with remove are not evicted.)
+   *
+   * @throws IllegalArgumentException
+   *   when capacity is not positive.
+   */
+  public TinyLfuAssociativeArray(int capacity,
+      BiConsumer<? super K, ? super V> listener) {
+    super(capacity, listener, 3);
+    this.sketch = new FrequencySketch(capacity);
+    this.windowCapacity = Math.max(1, capacity / 100);
+    this.protectedCapacity = (int) (0.8 * (capacity - this.windowCapacity));
+  } // TinyLfuAssociativeArray(int, BiConsumer)
+
+  // +------------------+--------------------------------------------
+  // | Standard Methods |
+  // +------------------+
+
+  /**
+   * Create a copy of this associative array, with the same lists,
+   * frequencies, listener, and counters.
+   */
+  public TinyLfuAssociativeArray<K, V> clone() {
+    TinyLfuAssociativeArray<K, V> temp =
+      new TinyLfuAssociativeArray<K, V>(this.capacity, this.listener);
+    this.copyInto(temp);
+    temp.sketch = new FrequencySketch(this.sketch);
+    return temp;
+  } // clone()
+
+  // +----------------+----------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  /**
+   * Set the value associated with key to value, and count a use of
+   * key. If that adds a pair to a full array, evict the pair leaving
+   * the window or the probation pair it competes with.
+   */
+  @Override
+  public void set(K key, V value) {
+    this.sketch.increment(AssociativeArray.hash(key));
+    super.set(key, value);
+  } // set(K, V)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  @Override
+  int lookup(K key) {
+    this.sketch.increment(AssociativeArray.hash(key));
+    return super.lookup(key);
+  } // lookup(K)
+
+  @Override
+  void add(K key, V value) {
+    if (this.lengths[WINDOW] >= this.windowCapacity) {
+      int candidate = this.heads[WINDOW];
+      int victim = (this.heads[PROBATION] != NIL) ? this.heads[PROBATION]
+                                                  : this.heads[PROTECTED];
+      if (this.size == this.capacity && (victim == NIL
+          || this.frequencyOf(candidate) <= this.frequencyOf(victim))) {
+        this.evict(candidate);
+      } else {
+        if (this.size == this.capacity) {
+          this.evict(victim);
+        } // if
+        this.unlink(candidate);
+        this.linkLast(candidate, PROBATION);
+      } // if/else
+    } else if (this.size == this.capacity) {
+      // removals have left the window short, so the main region is
+      // over its share
+      this.evict((this.heads[PROBATION] != NIL) ? this.heads[PROBATION]
+                                                : this.heads[PROTECTED]);
+    } // if/else
+    this.linkLast(this.allocate(key, value), WINDOW);
+  } // add(K, V)
+
+  @Override
+  void touch(int e) {
+    if (this.lists[e] != PROBATION) {
+      super.touch(e);
+      return;
+    } // if
+    // a second chance earned: promote the pair, making room by
+    // demoting the least recently used protected pair
+    this.unlink(e);
+    this.linkLast(e, PROTECTED);
+    if (this.lengths[PROTECTED] > this.protectedCapacity) {
+      int demoted = this.heads[PROTECTED];
+      this.unlink(demoted);
+      this.linkLast(demoted, PROBATION);
+    } // if
+  } // touch(int)
+
+  /**
+   * Estimate how often the key of entry e has been used.
+   */
+  int frequencyOf(int e) {
+    return this.sketch.frequency(AssociativeArray.hash(this.keys[e]));
+  } // frequencyOf(int)
+} // class TinyLfuAssociativeArray